@@ -0,0 +1,22 @@
+// RoutingEngine that runs DijkstraEngine.runAStar with a fixed heuristic.
+final class AStarEngine implements RoutingEngine {
+
+    private final DijkstraEngine engine;
+    private final Heuristic heuristic;
+
+    AStarEngine(DijkstraEngine engine, Heuristic heuristic) {
+        this.engine = engine;
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public int[] route(int source, int target) {
+        engine.runAStar(source, target, heuristic);
+        return engine.path(target);
+    }
+
+    @Override
+    public int settledNodes() {
+        return engine.settledNodes();
+    }
+}
@@ -0,0 +1,30 @@
+// Read access to the edges of a street graph independent of how they are
+// stored, e.g. plain CSR arrays (RoutingGraph) or compressed bytes
+// (CompressedRoutingGraph). Searches walk the edges of a node with a Cursor:
+//
+//   cursor.moveTo(node);
+//   while (cursor.next()) { ... cursor.target() ... cursor.weight() ... }
+//
+// A cursor is not thread-safe, every engine keeps its own.
+interface AdjacencyGraph {
+
+    int nodeCount();
+
+    Cursor cursor();
+
+    // Bytes taken by the adjacency data, to compare representations.
+    long memoryBytes();
+
+    interface Cursor {
+
+        // Moves before the first edge of node.
+        void moveTo(int node);
+
+        // Moves to the next edge of the node, false if there is none.
+        boolean next();
+
+        int target();
+
+        int weight();
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Answers batches of origin/destination queries on one shared, read-only
+// AdjacencyGraph. Queries are grouped by source, so each source costs a single
+// one-to-many Dijkstra that stops once all of its targets are settled. The
+// groups are spread over a ForkJoinPool. A leaf task takes a DijkstraEngine
+// from a pool of idle engines that lives for one batch, so there are at most
+// as many engines as threads and none of them outlives the batch in the
+// pool's threads. Results are returned in input order.
+final class BatchRouter {
+
+    // Groups per fork-join leaf task. Splitting finer costs more task overhead
+    // than a single search on small graphs.
+    private static final int GROUPS_PER_TASK = 4;
+
+    private final AdjacencyGraph graph;
+    private final ForkJoinPool pool;
+
+    BatchRouter(AdjacencyGraph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    BatchRouter(AdjacencyGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    // paths[i] are the node ids from sources[i] to targets[i], empty if unreachable.
+    int[][] route(int[] sources, int[] targets) {
+        int[][] paths = new int[sources.length][];
+        run(sources, targets, (engine, query, target) -> paths[query] = engine.path(target));
+        return paths;
+    }
+
+    // distances[i] is the distance from sources[i] to targets[i], INFINITY if unreachable.
+    long[] distances(int[] sources, int[] targets) {
+        long[] distances = new long[sources.length];
+        run(sources, targets, (engine, query, target) -> distances[query] = engine.distance(target));
+        return distances;
+    }
+
+    private void run(int[] sources, int[] targets, ResultSink sink) {
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException(sources.length + " sources but " + targets.length + " targets");
+        }
+        // Sort the query indices by source, packed as source << 32 | index.
+        long[] keys = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            keys[i] = (long) sources[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[sources.length];
+        int[] orderedTargets = new int[sources.length];
+        int[] groupStarts = new int[sources.length + 1];
+        int groupCount = 0;
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+            orderedTargets[i] = targets[order[i]];
+            if (i == 0 || sources[order[i]] != sources[order[i - 1]]) {
+                groupStarts[groupCount++] = i;
+            }
+        }
+        groupStarts[groupCount] = keys.length;
+        pool.invoke(new GroupTask(sources, order, orderedTargets, groupStarts, 0, groupCount, sink,
+                new ConcurrentLinkedQueue<>()));
+    }
+
+    private interface ResultSink {
+
+        void accept(DijkstraEngine engine, int query, int target);
+    }
+
+    // Tasks are never serialized.
+    @SuppressWarnings("serial")
+    private final class GroupTask extends RecursiveAction {
+
+        private final int[] sources;
+        private final int[] order;
+        private final int[] orderedTargets;
+        private final int[] groupStarts;
+        private final int fromGroup;
+        private final int toGroup;
+        private final ResultSink sink;
+        private final ConcurrentLinkedQueue<DijkstraEngine> idle;
+
+        private GroupTask(int[] sources, int[] order, int[] orderedTargets, int[] groupStarts,
+                int fromGroup, int toGroup, ResultSink sink, ConcurrentLinkedQueue<DijkstraEngine> idle) {
+            this.sources = sources;
+            this.order = order;
+            this.orderedTargets = orderedTargets;
+            this.groupStarts = groupStarts;
+            this.fromGroup = fromGroup;
+            this.toGroup = toGroup;
+            this.sink = sink;
+            this.idle = idle;
+        }
+
+        @Override
+        protected void compute() {
+            if (toGroup - fromGroup > GROUPS_PER_TASK) {
+                int middle = (fromGroup + toGroup) >>> 1;
+                invokeAll(new GroupTask(sources, order, orderedTargets, groupStarts, fromGroup, middle, sink, idle),
+                        new GroupTask(sources, order, orderedTargets, groupStarts, middle, toGroup, sink, idle));
+                return;
+            }
+            DijkstraEngine engine = idle.poll();
+            if (engine == null) {
+                engine = new DijkstraEngine(graph);
+            }
+            for (int group = fromGroup; group < toGroup; group++) {
+                int start = groupStarts[group];
+                int end = groupStarts[group + 1];
+                engine.run(sources[order[start]], orderedTargets, start, end);
+                for (int i = start; i < end; i++) {
+                    sink.accept(engine, order[i], orderedTargets[i]);
+                }
+            }
+            idle.add(engine);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// Bidirectional Dijkstra for the undirected street graph. A forward search
+// from the source and a backward search from the target run alternately; the
+// side with the smaller heap is expanded next. mu is the length of the best
+// path seen through any edge connecting both searches. Once the two minimum
+// keys add up to at least mu, no shorter path can exist.
+// Relies on the RoutingGraph being symmetric, as built from bidirectional streets.
+final class BidirectionalDijkstraEngine implements RoutingEngine {
+
+    private final RoutingGraph graph;
+    private final QueryWorkspace forward;
+    private final QueryWorkspace backward;
+    private int settledNodes;
+
+    BidirectionalDijkstraEngine(RoutingGraph graph) {
+        this.graph = graph;
+        forward = new QueryWorkspace(graph.nodeCount);
+        backward = new QueryWorkspace(graph.nodeCount);
+    }
+
+    @Override
+    public int[] route(int source, int target) {
+        int meeting = search(source, target);
+        if (meeting == QueryWorkspace.NO_PREDECESSOR) {
+            return new int[0];
+        }
+        int forwardLength = 0;
+        for (int node = meeting; node != source; node = forward.predecessor(node)) {
+            forwardLength++;
+        }
+        int backwardLength = 0;
+        for (int node = meeting; node != target; node = backward.predecessor(node)) {
+            backwardLength++;
+        }
+        int[] path = new int[forwardLength + backwardLength + 1];
+        int i = forwardLength;
+        for (int node = meeting; i >= 0; node = forward.predecessor(node), i--) {
+            path[i] = node;
+        }
+        i = forwardLength + 1;
+        for (int node = backward.predecessor(meeting); i < path.length; node = backward.predecessor(node), i++) {
+            path[i] = node;
+        }
+        return path;
+    }
+
+    // Shortest distance from source to target, INFINITY if target is unreachable.
+    long distance(int source, int target) {
+        int meeting = search(source, target);
+        if (meeting == QueryWorkspace.NO_PREDECESSOR) {
+            return QueryWorkspace.INFINITY;
+        }
+        return forward.distance(meeting) + backward.distance(meeting);
+    }
+
+    @Override
+    public int settledNodes() {
+        return settledNodes;
+    }
+
+    // Returns the node where the shortest path crosses from the forward to the
+    // backward search, or NO_PREDECESSOR if target is unreachable.
+    private int search(int source, int target) {
+        forward.reset();
+        backward.reset();
+        settledNodes = 0;
+        forward.reach(source, 0, source);
+        backward.reach(target, 0, target);
+        if (source == target) {
+            return source;
+        }
+        IndexedMinHeap forwardHeap = forward.heap();
+        IndexedMinHeap backwardHeap = backward.heap();
+        forwardHeap.insertOrDecrease(source, 0);
+        backwardHeap.insertOrDecrease(target, 0);
+
+        long mu = QueryWorkspace.INFINITY;
+        int meeting = QueryWorkspace.NO_PREDECESSOR;
+        int relaxedEdges = 0;
+        int heapPushes = 2;
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+            if (forwardHeap.minKey() + backwardHeap.minKey() >= mu) {
+                break;
+            }
+            boolean expandForward = forwardHeap.size() <= backwardHeap.size();
+            QueryWorkspace self = expandForward ? forward : backward;
+            QueryWorkspace other = expandForward ? backward : forward;
+            IndexedMinHeap heap = self.heap();
+
+            int current = heap.removeMin();
+            settledNodes++;
+            long currentDistance = self.distance(current);
+            if (QueryMetrics.ENABLED) {
+                relaxedEdges += graph.offsets[current + 1] - graph.offsets[current];
+            }
+            for (int edge = graph.offsets[current]; edge < graph.offsets[current + 1]; edge++) {
+                int neighbor = graph.targets[edge];
+                long viaCurrent = currentDistance + graph.weights[edge];
+                if (viaCurrent < self.distance(neighbor)) {
+                    self.reach(neighbor, viaCurrent, current);
+                    heap.insertOrDecrease(neighbor, viaCurrent);
+                    if (QueryMetrics.ENABLED) {
+                        heapPushes++;
+                    }
+                }
+                if (other.isReached(neighbor)) {
+                    long throughNeighbor = self.distance(neighbor) + other.distance(neighbor);
+                    if (throughNeighbor < mu) {
+                        mu = throughNeighbor;
+                        meeting = neighbor;
+                    }
+                }
+            }
+        }
+        if (QueryMetrics.ENABLED) {
+            QueryMetrics.recordSearch(settledNodes, relaxedEdges, 0, heapPushes);
+        }
+        return meeting;
+    }
+}
@@ -0,0 +1,101 @@
+// Dijkstra's algorithm on a MonotoneQueue instead of the comparison based
+// IndexedMinHeap. Street lengths are ints, so distances are integer keys that
+// only grow during a search: with short streets Dial's buckets make every
+// queue operation O(1), otherwise a radix heap makes it O(log C) for the
+// longest street C. The queue is picked from the graph's maxWeight.
+// There is no decrease-key: an improved node is added again and its older
+// entries are skipped when they come up (stale pops).
+final class BucketDijkstraEngine implements RoutingEngine {
+
+    private final RoutingGraph graph;
+    private final QueryWorkspace workspace;
+    private final MonotoneQueue queue;
+    private int source = QueryWorkspace.NO_PREDECESSOR;
+    private int settledNodes;
+
+    BucketDijkstraEngine(RoutingGraph graph) {
+        this(graph, new QueryWorkspace(graph.nodeCount), MonotoneQueue.forGraph(graph));
+    }
+
+    // Only the distances and predecessors of workspace are used, not its heap.
+    BucketDijkstraEngine(RoutingGraph graph, QueryWorkspace workspace, MonotoneQueue queue) {
+        if (workspace.nodeCount() != graph.nodeCount) {
+            throw new IllegalArgumentException("Workspace for " + workspace.nodeCount()
+                    + " nodes cannot serve a graph with " + graph.nodeCount + " nodes");
+        }
+        this.graph = graph;
+        this.workspace = workspace;
+        this.queue = queue;
+    }
+
+    MonotoneQueue queue() {
+        return queue;
+    }
+
+    // Point-to-point query: stops as soon as target is settled and returns its
+    // distance, INFINITY if it is unreachable.
+    long run(int source, int target) {
+        workspace.reset();
+        queue.clear();
+        this.source = source;
+        settledNodes = 0;
+        workspace.reach(source, 0, source);
+        queue.add(source, 0);
+
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        int[] weights = graph.weights;
+        int relaxedEdges = 0;
+        int stalePops = 0;
+        int pushes = 1;
+        while (!queue.isEmpty()) {
+            int current = queue.removeMin();
+            long currentDistance = queue.lastKey();
+            if (currentDistance > workspace.distance(current)) {
+                // added again with a smaller key, which was settled before
+                if (QueryMetrics.ENABLED) {
+                    stalePops++;
+                }
+                continue;
+            }
+            settledNodes++;
+            if (current == target) {
+                break;
+            }
+            if (QueryMetrics.ENABLED) {
+                relaxedEdges += offsets[current + 1] - offsets[current];
+            }
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                int neighbor = targets[edge];
+                long viaCurrent = currentDistance + weights[edge];
+                if (viaCurrent < workspace.distance(neighbor)) {
+                    workspace.reach(neighbor, viaCurrent, current);
+                    queue.add(neighbor, viaCurrent);
+                    if (QueryMetrics.ENABLED) {
+                        pushes++;
+                    }
+                }
+            }
+        }
+        if (QueryMetrics.ENABLED) {
+            QueryMetrics.recordSearch(settledNodes, relaxedEdges, stalePops, pushes);
+        }
+        return workspace.distance(target);
+    }
+
+    @Override
+    public int[] route(int source, int target) {
+        run(source, target);
+        return path(target);
+    }
+
+    @Override
+    public int settledNodes() {
+        return settledNodes;
+    }
+
+    // Node ids from the source of the last run to target, empty if target is unreachable.
+    int[] path(int target) {
+        return workspace.path(source, target);
+    }
+}
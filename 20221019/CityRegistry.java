@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Dense ids for the cities of a region, handed out in registration order, with
+// O(1) lookup by name and by id. The ids are the node ids of the RoutingGraph,
+// so after parsing neither the graph nor a search has to hash a city again.
+final class CityRegistry<C> {
+
+    static final int UNKNOWN_CITY = RoutingRegion.UNKNOWN_CITY;
+
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final List<C> citiesById = new ArrayList<>();
+
+    // Returns the city called name. A city seen for the first time is created by
+    // newCity with the next free id.
+    C register(String name, IntFunction<? extends C> newCity) {
+        Integer existing = idsByName.get(name);
+        if (existing != null) {
+            return citiesById.get(existing);
+        }
+        int id = citiesById.size();
+        C city = newCity.apply(id);
+        idsByName.put(name, id);
+        citiesById.add(city);
+        return city;
+    }
+
+    int id(String name) {
+        return idsByName.getOrDefault(name, UNKNOWN_CITY);
+    }
+
+    C get(int id) {
+        return citiesById.get(id);
+    }
+
+    // null if no city is called name
+    C get(String name) {
+        Integer id = idsByName.get(name);
+        return id == null ? null : citiesById.get(id);
+    }
+
+    int size() {
+        return citiesById.size();
+    }
+
+    // In id order.
+    List<C> cities() {
+        return Collections.unmodifiableList(citiesById);
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+// Memory and query time of CompressedRoutingGraph next to the CSR arrays of
+// RoutingGraph. A RegionGenerator region is parsed and its cities shuffled,
+// as if the input file listed them in hash order; the gaps between neighbor
+// ids, and so the compressed size, depend on the numbering, so every graph is
+// measured shuffled and renumbered by the hilbert (or, without coordinates,
+// rcm) NodeOrder. The same random point-to-point queries are run with
+// DijkstraEngine on both representations, after a warm-up; their distances
+// must agree. The compressed graph is packed once from the arrays and once
+// edge by edge through CompressedRoutingGraph.Builder, as RegionParser
+// streams it with -Dnavigation.graph=compressed.
+// Prints one CSV row per numbering and representation.
+// Usage: java CompressedGraphBenchmark [nodes] [shape, see RegionGenerator] [queries]
+public class CompressedGraphBenchmark {
+
+    private static final int WARMUP_QUERIES = 20;
+
+    public static void main(String[] args) throws IOException {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String shape = args.length > 1 ? args[1] : "planar";
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        Path file = Files.createTempFile("regions", ".txt");
+        RoutingRegion region;
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                new RegionGenerator(shape, 42, null, true).write(nodes, out);
+            }
+            region = RegionParser.parse(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        Random random = new Random(42);
+        RoutingRegion shuffled = region.reordered(NodeOrder.shuffled(region.graph.nodeCount(), random));
+        NodeOrder local = NodeOrder.byName(shuffled.x != null ? "hilbert" : "rcm", shuffled.routingGraph(),
+                shuffled.x, shuffled.y);
+        System.err.println(shuffled);
+
+        int[] sources = new int[WARMUP_QUERIES + queries];
+        int[] targets = new int[WARMUP_QUERIES + queries];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(shuffled.graph.nodeCount());
+            targets[i] = random.nextInt(shuffled.graph.nodeCount());
+        }
+
+        System.out.println("numbering,representation,nodes,edges,bytes,bytes per edge,build ms,point-to-point us");
+        RoutingGraph shuffledGraph = shuffled.routingGraph();
+        for (String numbering : new String[] {"shuffled", "local"}) {
+            RoutingGraph graph = "local".equals(numbering) ? local.apply(shuffledGraph) : shuffledGraph;
+            int[] ids = new int[graph.nodeCount];
+            for (int id = 0; id < ids.length; id++) {
+                ids[id] = "local".equals(numbering) ? local.newId(id) : id;
+            }
+            long[] expected = new long[sources.length];
+            long nanos = measure(new DijkstraEngine(graph), ids, sources, targets, expected, null);
+            print(numbering, "csr", graph, graph.memoryBytes(), 0, nanos, queries);
+
+            long start = System.nanoTime();
+            CompressedRoutingGraph compressed = CompressedRoutingGraph.compress(graph);
+            double buildMillis = (System.nanoTime() - start) / 1e6;
+            nanos = measure(new DijkstraEngine(compressed), ids, sources, targets, new long[sources.length], expected);
+            print(numbering, "compressed", graph, compressed.memoryBytes(), buildMillis, nanos, queries);
+
+            // the streets in the order of the shuffled file, as RegionParser would add them
+            start = System.nanoTime();
+            CompressedRoutingGraph.Builder builder = new CompressedRoutingGraph.Builder(graph.nodeCount);
+            for (int node = 0; node < graph.nodeCount; node++) {
+                int from = ids[node];
+                for (int edge = shuffledGraph.offsets[node]; edge < shuffledGraph.offsets[node + 1]; edge++) {
+                    int to = shuffledGraph.targets[edge];
+                    builder.addEdge(from, ids[to], shuffledGraph.weights[edge]);
+                }
+            }
+            CompressedRoutingGraph streamed = builder.build();
+            buildMillis = (System.nanoTime() - start) / 1e6;
+            nanos = measure(new DijkstraEngine(streamed), ids, sources, targets, new long[sources.length], expected);
+            print(numbering, "compressed-builder", graph, streamed.memoryBytes(), buildMillis, nanos, queries);
+        }
+    }
+
+    // Runs all queries, stores their distances and checks them against expected, unless it is null.
+    private static long measure(DijkstraEngine engine, int[] ids, int[] sources, int[] targets, long[] distances,
+            long[] expected) {
+        long nanos = 0;
+        for (int i = 0; i < sources.length; i++) {
+            long start = System.nanoTime();
+            long distance = engine.run(ids[sources[i]], ids[targets[i]]);
+            if (i >= WARMUP_QUERIES) {
+                nanos += System.nanoTime() - start;
+            }
+            distances[i] = distance;
+            if (expected != null && distance != expected[i]) {
+                throw new IllegalStateException(engine.graph() + " returned " + distance + " instead of "
+                        + expected[i] + " for query " + i);
+            }
+        }
+        return nanos;
+    }
+
+    private static void print(String numbering, String representation, RoutingGraph graph, long bytes,
+            double buildMillis, long nanos, int queries) {
+        System.out.printf(Locale.ROOT, "%s,%s,%d,%d,%d,%.2f,%.1f,%.1f%n", numbering, representation,
+                graph.nodeCount, graph.edgeCount(), bytes, (double) bytes / Math.max(1, graph.edgeCount()),
+                buildMillis, nanos / 1e3 / queries);
+    }
+}
@@ -0,0 +1,390 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Street graph with the edges packed into one byte array, so that a search
+// touches fewer bytes per edge. The edges of a node are sorted by target and
+// stored as
+//   target gap  varint: the first one zigzag encoded relative to the node
+//               itself, every further one relative to the previous target
+//   weight      weightBytes little-endian bytes, 1 to 4 depending on the
+//               longest street of the graph
+// and decoded on the fly by the Cursor. With ids that follow the street
+// network (see NodeOrder), most gaps fit into one or two bytes, so an edge
+// takes about 3 bytes instead of 8. offsets[v] is the position of the edges
+// of v in data, so the byte array is limited to 2 GB. compress packs any
+// AdjacencyGraph, e.g. a mapped RegionSnapshot, node by node; the Builder
+// packs edges in any order, e.g. from RegionParser, so no CSR arrays have
+// to exist first.
+final class CompressedRoutingGraph implements AdjacencyGraph {
+
+    private final int nodeCount;
+    private final int[] offsets;
+    private final byte[] data;
+    private final int weightBytes;
+    private final int edgeCount;
+
+    private CompressedRoutingGraph(int nodeCount, int[] offsets, byte[] data, int weightBytes, int edgeCount) {
+        this.nodeCount = nodeCount;
+        this.offsets = offsets;
+        this.data = data;
+        this.weightBytes = weightBytes;
+        this.edgeCount = edgeCount;
+    }
+
+    static CompressedRoutingGraph compress(AdjacencyGraph graph) {
+        int nodeCount = graph.nodeCount();
+        AdjacencyGraph.Cursor cursor = graph.cursor();
+        int maxWeight = 0;
+        long edgeCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                maxWeight = Math.max(maxWeight, cursor.weight());
+                edgeCount++;
+            }
+        }
+        int weightBytes = weightBytes(maxWeight);
+        long[] edges = new long[16];
+        // First pass for the size, second one to write.
+        int[] offsets = new int[nodeCount + 1];
+        byte[] data = null;
+        for (int pass = 0; pass < 2; pass++) {
+            long position = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = 0;
+                cursor.moveTo(node);
+                while (cursor.next()) {
+                    if (degree == edges.length) {
+                        edges = Arrays.copyOf(edges, degree * 2);
+                    }
+                    edges[degree++] = edge(cursor.target(), cursor.weight());
+                }
+                offsets[node] = (int) position;
+                position = writeEdges(data, position, node, edges, degree, weightBytes);
+            }
+            offsets[nodeCount] = (int) position;
+            if (data == null) {
+                data = new byte[(int) position];
+            }
+        }
+        return new CompressedRoutingGraph(nodeCount, offsets, data, weightBytes, checkedEdgeCount(edgeCount));
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public long memoryBytes() {
+        return (long) Integer.BYTES * offsets.length + data.length;
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new Cursor() {
+            private int position;
+            private int end;
+            private int node;
+            private boolean first;
+            private int target;
+            private int weight;
+
+            @Override
+            public void moveTo(int node) {
+                this.node = node;
+                position = offsets[node];
+                end = offsets[node + 1];
+                first = true;
+            }
+
+            @Override
+            public boolean next() {
+                if (position >= end) {
+                    return false;
+                }
+                byte[] bytes = data;
+                int p = position;
+                // varint, 7 bits per byte, lowest group first
+                int b = bytes[p++];
+                int gap = b & 0x7F;
+                for (int shift = 7; b < 0; shift += 7) {
+                    b = bytes[p++];
+                    gap |= (b & 0x7F) << shift;
+                }
+                if (first) {
+                    target = node + ((gap >>> 1) ^ -(gap & 1));
+                    first = false;
+                } else {
+                    target += gap;
+                }
+                int value = bytes[p] & 0xFF;
+                for (int i = 1; i < weightBytes; i++) {
+                    value |= (bytes[p + i] & 0xFF) << (8 * i);
+                }
+                weight = value;
+                position = p + weightBytes;
+                return true;
+            }
+
+            @Override
+            public int target() {
+                return target;
+            }
+
+            @Override
+            public int weight() {
+                return weight;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedRoutingGraph{" + "nodes=" + nodeCount + ", edges=" + edgeCount
+                + ", bytes=" + memoryBytes() + '}';
+    }
+
+    // Sorts the edges of node, target << 32 | weight, and writes them at
+    // position. Returns the position after them; only counts if data is null.
+    private static long writeEdges(byte[] data, long position, int node, long[] edges, int degree, int weightBytes) {
+        Arrays.sort(edges, 0, degree);
+        int previous = node;
+        for (int i = 0; i < degree; i++) {
+            int target = (int) (edges[i] >>> 32);
+            long gap = i == 0 ? zigzag(target - node) : target - previous;
+            previous = target;
+            position = writeVarint(data, position, gap);
+            if (data != null) {
+                int weight = (int) edges[i];
+                for (int b = 0; b < weightBytes; b++) {
+                    data[(int) position + b] = (byte) (weight >>> (8 * b));
+                }
+            }
+            position += weightBytes;
+        }
+        if (position > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Compressed graph exceeds 2 GB");
+        }
+        return position;
+    }
+
+    private static long edge(int target, int weight) {
+        return (long) target << 32 | (weight & 0xFFFFFFFFL);
+    }
+
+    private static int weightBytes(int maxWeight) {
+        return Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(maxWeight) + 7) / 8);
+    }
+
+    private static int checkedEdgeCount(long edgeCount) {
+        if (edgeCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(edgeCount + " edges are too many for a compressed graph");
+        }
+        return (int) edgeCount;
+    }
+
+    // Maps ..., -2, -1, 0, 1, 2, ... to 3, 1, 0, 2, 4, ... so small gaps of either sign stay small.
+    private static long zigzag(int value) {
+        return ((long) value << 1 ^ (long) value >> 63) & 0xFFFFFFFFL;
+    }
+
+    // Returns the position after the varint; only counts the bytes if data is null.
+    private static long writeVarint(byte[] data, long position, long value) {
+        while (value >= 0x80) {
+            if (data != null) {
+                data[(int) position] = (byte) (value | 0x80);
+            }
+            position++;
+            value >>>= 7;
+        }
+        if (data != null) {
+            data[(int) position] = (byte) value;
+        }
+        return position + 1;
+    }
+
+    // Packs edges that arrive in any order. They are buffered in a chunk of at
+    // most CHUNK_EDGES; a full chunk is sorted by source and appended as a run
+    // in the same varint encoding, with a varint weight since the longest
+    // street is not known yet. build merges the runs node by node into the
+    // final encoding, in two passes like compress. Next to the result only the
+    // runs, a few bytes per edge, and one chunk exist, never 8 bytes per edge.
+    static final class Builder implements GraphBuilder {
+
+        private static final int CHUNK_EDGES = 1 << 21;
+
+        private final int nodeCount;
+        // chunk edge i goes from keys[i] >>> 32, the low half is i itself
+        private long[] keys = new long[1024];
+        private int[] targets = new int[1024];
+        private int[] weights = new int[1024];
+        private int size;
+        private final List<byte[]> runs = new ArrayList<>();
+        private int maxWeight;
+        private long edgeCount;
+
+        Builder(int nodeCount) {
+            this.nodeCount = nodeCount;
+        }
+
+        @Override
+        public Builder addEdge(int from, int to, int length) {
+            if (from < 0 || from >= nodeCount || to < 0 || to >= nodeCount) {
+                throw new IllegalArgumentException("Edge " + from + " -> " + to + " outside of [0, " + nodeCount + ")");
+            }
+            if (size == keys.length) {
+                if (size == CHUNK_EDGES) {
+                    flush();
+                } else {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    targets = Arrays.copyOf(targets, size * 2);
+                    weights = Arrays.copyOf(weights, size * 2);
+                }
+            }
+            keys[size] = (long) from << 32 | size;
+            targets[size] = to;
+            weights[size] = length;
+            size++;
+            maxWeight = Math.max(maxWeight, length);
+            edgeCount++;
+            return this;
+        }
+
+        @Override
+        public CompressedRoutingGraph build() {
+            flush();
+            keys = null;
+            targets = null;
+            weights = null;
+            int weightBytes = weightBytes(maxWeight);
+            Run[] readers = new Run[runs.size()];
+            long[] edges = new long[16];
+            int[] offsets = new int[nodeCount + 1];
+            byte[] data = null;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < readers.length; i++) {
+                    readers[i] = new Run(runs.get(i));
+                }
+                long position = 0;
+                for (int node = 0; node < nodeCount; node++) {
+                    int degree = 0;
+                    for (Run run : readers) {
+                        if (run.node == node) {
+                            if (degree + run.degree > edges.length) {
+                                edges = Arrays.copyOf(edges, Math.max(degree + run.degree, edges.length * 2));
+                            }
+                            degree = run.readEdges(edges, degree);
+                        }
+                    }
+                    offsets[node] = (int) position;
+                    position = writeEdges(data, position, node, edges, degree, weightBytes);
+                }
+                offsets[nodeCount] = (int) position;
+                if (data == null) {
+                    data = new byte[(int) position];
+                }
+            }
+            runs.clear();
+            return new CompressedRoutingGraph(nodeCount, offsets, data, weightBytes, checkedEdgeCount(edgeCount));
+        }
+
+        // Appends the chunk as a run: per source node in ascending order the
+        // varint node gap and degree, then the edges in the order they were
+        // added, each as zigzag varint target gap (the first one relative to
+        // the node) and varint weight.
+        private void flush() {
+            if (size == 0) {
+                return;
+            }
+            Arrays.sort(keys, 0, size);
+            // First pass for the size, second one to write.
+            byte[] run = null;
+            for (int pass = 0; pass < 2; pass++) {
+                long position = 0;
+                int previousNode = 0;
+                for (int first = 0; first < size; ) {
+                    int node = (int) (keys[first] >>> 32);
+                    int last = first;
+                    while (last < size && (int) (keys[last] >>> 32) == node) {
+                        last++;
+                    }
+                    position = writeVarint(run, position, node - previousNode);
+                    position = writeVarint(run, position, last - first);
+                    previousNode = node;
+                    int previousTarget = node;
+                    for (int i = first; i < last; i++) {
+                        int edge = (int) keys[i];
+                        int target = targets[edge];
+                        position = writeVarint(run, position, zigzag(target - previousTarget));
+                        previousTarget = target;
+                        position = writeVarint(run, position, weights[edge] & 0xFFFFFFFFL);
+                    }
+                    first = last;
+                }
+                if (position > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Chunk of " + size + " edges exceeds 2 GB");
+                }
+                if (run == null) {
+                    run = new byte[(int) position];
+                }
+            }
+            runs.add(run);
+            size = 0;
+        }
+
+        // Sequential reader of a run, positioned at the edges of node.
+        private static final class Run {
+
+            private final byte[] data;
+            private int position;
+            // -1 once the run is exhausted
+            private int node = -1;
+            private int degree;
+
+            private Run(byte[] data) {
+                this.data = data;
+                nextNode(0);
+            }
+
+            // Appends the edges of node to edges[from ..] as target << 32 | weight
+            // and moves to the next node; returns the new end.
+            private int readEdges(long[] edges, int from) {
+                int target = node;
+                for (int i = 0; i < degree; i++) {
+                    long gap = readVarint();
+                    target += (int) (gap >>> 1) ^ -(int) (gap & 1);
+                    edges[from++] = edge(target, (int) readVarint());
+                }
+                nextNode(node);
+                return from;
+            }
+
+            private void nextNode(int previous) {
+                if (position == data.length) {
+                    node = -1;
+                    return;
+                }
+                node = previous + (int) readVarint();
+                degree = (int) readVarint();
+            }
+
+            private long readVarint() {
+                long value = 0;
+                int b;
+                int shift = 0;
+                do {
+                    b = data[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                return value;
+            }
+        }
+    }
+}
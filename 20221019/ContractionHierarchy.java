@@ -0,0 +1,377 @@
+import java.util.Arrays;
+
+// Contraction Hierarchy of an undirected RoutingGraph. Preprocessing
+// contracts the nodes one by one in the order of a heuristic priority (edge
+// difference plus number of already contracted neighbors). Contracting v
+// adds a shortcut u - w of length d(u, v) + d(v, w) unless a witness search
+// finds a path of at most that length that avoids v. The position in that
+// order is the node's rank.
+// The result keeps, for every node, only the edges to higher ranked nodes.
+// Each shortcut remembers the node it bypasses and the two edges it replaces,
+// so queries can unpack it without looking edges up.
+// The hierarchy is immutable and can be shared by all query threads.
+final class ContractionHierarchy {
+
+    static final int NO_MIDDLE = -1;
+
+    final int nodeCount;
+    final int[] rank;
+    // upward edges in CSR layout, middles[e] is the bypassed node or NO_MIDDLE;
+    // weights are long since a shortcut can be longer than Integer.MAX_VALUE
+    final int[] offsets;
+    final int[] targets;
+    final long[] weights;
+    final int[] middles;
+    // For a shortcut e from lower to higher: lowerHalves[e] is the edge from
+    // middles[e] to lower, upperHalves[e] the one from middles[e] to higher.
+    // Both are upward edges of the middle node, which has the lowest rank.
+    final int[] lowerHalves;
+    final int[] upperHalves;
+
+    private ContractionHierarchy(int[] rank, int[] offsets, int[] targets, long[] weights, int[] middles) {
+        this.nodeCount = rank.length;
+        this.rank = rank;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.middles = middles;
+        lowerHalves = new int[targets.length];
+        upperHalves = new int[targets.length];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                int middle = middles[edge];
+                lowerHalves[edge] = middle == NO_MIDDLE ? -1 : edgeIndex(middle, node);
+                upperHalves[edge] = middle == NO_MIDDLE ? -1 : edgeIndex(middle, targets[edge]);
+            }
+        }
+    }
+
+    static ContractionHierarchy build(RoutingGraph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    // Hierarchy for graph, which differs from the graph this was built for only in
+    // the street lengths of updates. The contraction order is kept and only the
+    // nodes from the lowest affected rank on are contracted again. If all streets
+    // got shorter, that rank is the lowest one of their end points: contracting a
+    // lower node never looks at such a street as part of the path it may shortcut,
+    // and a shorter street only makes its witnesses shorter. A longer street can
+    // invalidate a witness of any lower node, so then all nodes are contracted
+    // again, still without the priority computation of build.
+    ContractionHierarchy repair(RoutingGraph graph, StreetUpdates updates, boolean lengthsIncreased) {
+        int firstRank = nodeCount;
+        for (int update = 0; update < updates.size(); update++) {
+            firstRank = Math.min(firstRank, Math.min(rank[updates.from(update)], rank[updates.to(update)]));
+        }
+        if (lengthsIncreased) {
+            firstRank = 0;
+        }
+        if (firstRank == nodeCount) {
+            return this;
+        }
+        return new Contractor(graph, this, firstRank).recontract();
+    }
+
+    int edgeCount() {
+        return targets.length;
+    }
+
+    // Index of the upward edge between a and b, -1 if there is none.
+    private int edgeIndex(int a, int b) {
+        int lower = rank[a] < rank[b] ? a : b;
+        int higher = lower == a ? b : a;
+        for (int edge = offsets[lower]; edge < offsets[lower + 1]; edge++) {
+            if (targets[edge] == higher) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ContractionHierarchy{" + "nodes=" + nodeCount + ", upwardEdges=" + edgeCount() + '}';
+    }
+
+    // Mutable remaining graph during preprocessing. Contracting a node removes it
+    // from its neighbors' lists, but its own list is left as it is: it then holds
+    // exactly the node's edges to higher ranked nodes.
+    private static final class Contractor {
+
+        // A witness search gives up after this many nodes; the shortcut is then
+        // added even if it might be unnecessary, which costs size but not correctness.
+        // Simulated contractions only estimate the priority and search less.
+        private static final int WITNESS_SETTLE_LIMIT = 500;
+        private static final int SIMULATED_WITNESS_SETTLE_LIMIT = 50;
+
+        private final int nodeCount;
+        // Set when repairing: nodes below firstRank keep their upward edges from previous.
+        private final ContractionHierarchy previous;
+        private final int firstRank;
+        private final int[][] adjacentTargets;
+        private final long[][] adjacentWeights;
+        private final int[][] adjacentMiddles;
+        private final int[] adjacentCounts;
+        private final int[] contractedNeighbors;
+        private final int[] levels;
+        private final QueryWorkspace witness;
+        private final int[] witnessTargets;
+        private int witnessTargetMark;
+
+        private Contractor(RoutingGraph graph) {
+            this(graph, null, 0);
+        }
+
+        // The remaining graph just before the node of rank firstRank is contracted:
+        // the streets between nodes of at least that rank, plus the shortcuts the
+        // lower nodes left between them.
+        private Contractor(RoutingGraph graph, ContractionHierarchy previous, int firstRank) {
+            nodeCount = graph.nodeCount;
+            this.previous = previous;
+            this.firstRank = firstRank;
+            adjacentTargets = new int[nodeCount][];
+            adjacentWeights = new long[nodeCount][];
+            adjacentMiddles = new int[nodeCount][];
+            adjacentCounts = new int[nodeCount];
+            contractedNeighbors = new int[nodeCount];
+            levels = new int[nodeCount];
+            witness = new QueryWorkspace(nodeCount);
+            witnessTargets = new int[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = Math.max(graph.degree(node), 1);
+                adjacentTargets[node] = new int[degree];
+                adjacentWeights[node] = new long[degree];
+                adjacentMiddles[node] = new int[degree];
+                if (previous != null && previous.rank[node] < firstRank) {
+                    continue;
+                }
+                for (int edge = graph.offsets[node]; edge < graph.offsets[node + 1]; edge++) {
+                    int neighbor = graph.targets[edge];
+                    if (neighbor != node && (previous == null || previous.rank[neighbor] >= firstRank)) {
+                        addOrImprove(node, neighbor, graph.weights[edge], NO_MIDDLE);
+                    }
+                }
+            }
+            if (previous == null) {
+                return;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                if (previous.rank[node] < firstRank) {
+                    continue;
+                }
+                for (int edge = previous.offsets[node]; edge < previous.offsets[node + 1]; edge++) {
+                    int middle = previous.middles[edge];
+                    if (middle != NO_MIDDLE && previous.rank[middle] < firstRank) {
+                        addOrImprove(node, previous.targets[edge], previous.weights[edge], middle);
+                        addOrImprove(previous.targets[edge], node, previous.weights[edge], middle);
+                    }
+                }
+            }
+            // A shortcut of a lower node is lost above if a street or a later shortcut
+            // replaced it. Such a pair has an edge in previous, so connecting the pairs
+            // of higher neighbors that have one restores it without adding new pairs.
+            for (int lower = 0; lower < nodeCount; lower++) {
+                if (previous.rank[lower] >= firstRank) {
+                    continue;
+                }
+                for (int i = previous.offsets[lower]; i < previous.offsets[lower + 1]; i++) {
+                    int u = previous.targets[i];
+                    if (previous.rank[u] < firstRank) {
+                        continue;
+                    }
+                    for (int j = i + 1; j < previous.offsets[lower + 1]; j++) {
+                        int w = previous.targets[j];
+                        if (previous.rank[w] < firstRank) {
+                            continue;
+                        }
+                        int edge = previous.edgeIndex(u, w);
+                        if (edge != -1 && (previous.middles[edge] == NO_MIDDLE
+                                || previous.rank[previous.middles[edge]] >= firstRank)) {
+                            long viaLower = previous.weights[i] + previous.weights[j];
+                            addOrImprove(u, w, viaLower, lower);
+                            addOrImprove(w, u, viaLower, lower);
+                        }
+                    }
+                }
+            }
+        }
+
+        private ContractionHierarchy contract() {
+            IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                queue.insertOrUpdate(node, priority(node));
+            }
+            int[] rank = new int[nodeCount];
+            int nextRank = 0;
+            while (!queue.isEmpty()) {
+                int node = queue.removeMin();
+                // Lazy update: neighbors of contracted nodes are not re-evaluated
+                // eagerly, instead a node is requeued if its priority grew meanwhile.
+                long priority = priority(node);
+                if (!queue.isEmpty() && priority > queue.minKey()) {
+                    queue.insertOrUpdate(node, priority);
+                    continue;
+                }
+                contractNode(node, false);
+                rank[node] = nextRank++;
+                for (int i = 0; i < adjacentCounts[node]; i++) {
+                    int neighbor = adjacentTargets[node][i];
+                    remove(neighbor, node);
+                    contractedNeighbors[neighbor]++;
+                    levels[neighbor] = Math.max(levels[neighbor], levels[node] + 1);
+                }
+            }
+            return buildUpwardGraph(rank);
+        }
+
+        // Contracts the nodes from firstRank on again, in the order of previous.
+        private ContractionHierarchy recontract() {
+            int[] order = new int[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                order[previous.rank[node]] = node;
+            }
+            for (int r = firstRank; r < nodeCount; r++) {
+                int node = order[r];
+                contractNode(node, false);
+                for (int i = 0; i < adjacentCounts[node]; i++) {
+                    remove(adjacentTargets[node][i], node);
+                }
+            }
+            return buildUpwardGraph(previous.rank);
+        }
+
+        private long priority(int node) {
+            int edgeDifference = contractNode(node, true) - adjacentCounts[node];
+            // The level keeps the hierarchy shallow, which bounds the query search space.
+            return 2L * edgeDifference + contractedNeighbors[node] + levels[node];
+        }
+
+        // Returns the number of shortcuts contracting node needs, and adds them
+        // unless simulate is set.
+        private int contractNode(int node, boolean simulate) {
+            int[] neighbors = adjacentTargets[node];
+            long[] neighborWeights = adjacentWeights[node];
+            int count = adjacentCounts[node];
+            int shortcuts = 0;
+            for (int i = 0; i < count - 1; i++) {
+                long maxDistance = 0;
+                witnessTargetMark++;
+                for (int j = i + 1; j < count; j++) {
+                    maxDistance = Math.max(maxDistance, neighborWeights[i] + neighborWeights[j]);
+                    witnessTargets[neighbors[j]] = witnessTargetMark;
+                }
+                witnessSearch(neighbors[i], node, maxDistance, count - i - 1,
+                        simulate ? SIMULATED_WITNESS_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+                for (int j = i + 1; j < count; j++) {
+                    long viaNode = neighborWeights[i] + neighborWeights[j];
+                    if (witness.distance(neighbors[j]) > viaNode) {
+                        shortcuts++;
+                        if (!simulate) {
+                            addOrImprove(neighbors[i], neighbors[j], viaNode, node);
+                            addOrImprove(neighbors[j], neighbors[i], viaNode, node);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        // Bounded Dijkstra in the remaining graph without the node being contracted.
+        // It ends early once all marked witness targets are settled.
+        private void witnessSearch(int source, int excluded, long maxDistance, int targetCount, int settleLimit) {
+            witness.reset();
+            witness.reach(source, 0, source);
+            IndexedMinHeap heap = witness.heap();
+            heap.insertOrDecrease(source, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && heap.minKey() <= maxDistance && settled < settleLimit) {
+                int current = heap.removeMin();
+                settled++;
+                if (witnessTargets[current] == witnessTargetMark && --targetCount == 0) {
+                    break;
+                }
+                long currentDistance = witness.distance(current);
+                int[] targets = adjacentTargets[current];
+                long[] weights = adjacentWeights[current];
+                for (int i = 0; i < adjacentCounts[current]; i++) {
+                    int neighbor = targets[i];
+                    if (neighbor == excluded) {
+                        continue;
+                    }
+                    long viaCurrent = currentDistance + weights[i];
+                    if (viaCurrent < witness.distance(neighbor)) {
+                        witness.reach(neighbor, viaCurrent, current);
+                        heap.insertOrDecrease(neighbor, viaCurrent);
+                    }
+                }
+            }
+        }
+
+        // Keeps a single edge per node pair, the shortest one.
+        private void addOrImprove(int from, int to, long weight, int middle) {
+            int[] targets = adjacentTargets[from];
+            int count = adjacentCounts[from];
+            for (int i = 0; i < count; i++) {
+                if (targets[i] == to) {
+                    if (weight < adjacentWeights[from][i]) {
+                        adjacentWeights[from][i] = weight;
+                        adjacentMiddles[from][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (count == targets.length) {
+                adjacentTargets[from] = Arrays.copyOf(targets, count * 2);
+                adjacentWeights[from] = Arrays.copyOf(adjacentWeights[from], count * 2);
+                adjacentMiddles[from] = Arrays.copyOf(adjacentMiddles[from], count * 2);
+            }
+            adjacentTargets[from][count] = to;
+            adjacentWeights[from][count] = weight;
+            adjacentMiddles[from][count] = middle;
+            adjacentCounts[from]++;
+        }
+
+        private void remove(int from, int to) {
+            int last = adjacentCounts[from] - 1;
+            for (int i = 0; i <= last; i++) {
+                if (adjacentTargets[from][i] == to) {
+                    adjacentTargets[from][i] = adjacentTargets[from][last];
+                    adjacentWeights[from][i] = adjacentWeights[from][last];
+                    adjacentMiddles[from][i] = adjacentMiddles[from][last];
+                    adjacentCounts[from] = last;
+                    return;
+                }
+            }
+        }
+
+        private ContractionHierarchy buildUpwardGraph(int[] rank) {
+            int[] offsets = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] = offsets[node] + (kept(node)
+                        ? previous.offsets[node + 1] - previous.offsets[node]
+                        : adjacentCounts[node]);
+            }
+            int[] targets = new int[offsets[nodeCount]];
+            long[] weights = new long[offsets[nodeCount]];
+            int[] middles = new int[offsets[nodeCount]];
+            for (int node = 0; node < nodeCount; node++) {
+                if (kept(node)) {
+                    int start = previous.offsets[node];
+                    int count = previous.offsets[node + 1] - start;
+                    System.arraycopy(previous.targets, start, targets, offsets[node], count);
+                    System.arraycopy(previous.weights, start, weights, offsets[node], count);
+                    System.arraycopy(previous.middles, start, middles, offsets[node], count);
+                } else {
+                    System.arraycopy(adjacentTargets[node], 0, targets, offsets[node], adjacentCounts[node]);
+                    System.arraycopy(adjacentWeights[node], 0, weights, offsets[node], adjacentCounts[node]);
+                    System.arraycopy(adjacentMiddles[node], 0, middles, offsets[node], adjacentCounts[node]);
+                }
+            }
+            return new ContractionHierarchy(rank, offsets, targets, weights, middles);
+        }
+
+        private boolean kept(int node) {
+            return previous != null && previous.rank[node] < firstRank;
+        }
+    }
+}
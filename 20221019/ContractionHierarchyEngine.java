@@ -0,0 +1,208 @@
+import java.util.Arrays;
+
+// Query on a ContractionHierarchy: a forward search from the source and a
+// backward search from the target, both only following edges to higher ranked
+// nodes. A side stops once its minimum key reaches the best meeting distance
+// mu. The resulting path is made of hierarchy edges, its shortcuts are
+// unpacked into original streets before it is returned. Each side records the
+// edge it reached a node by, so unpacking follows the halves of the shortcuts
+// (see ContractionHierarchy.lowerHalves) without searching edge lists.
+final class ContractionHierarchyEngine implements RoutingEngine {
+
+    private ContractionHierarchy hierarchy;
+    private final QueryWorkspace forward;
+    private final QueryWorkspace backward;
+    // hierarchy edge from the predecessor, valid for the nodes reached by that side
+    private final int[] forwardEdges;
+    private final int[] backwardEdges;
+    private int settledNodes;
+    // (edge, from, to) triples still to unpack
+    private int[] unpackStack = new int[48];
+    private int[] unpacked = new int[32];
+    private int unpackedCount;
+
+    ContractionHierarchyEngine(ContractionHierarchy hierarchy) {
+        this(hierarchy, new QueryWorkspace(hierarchy.nodeCount), new QueryWorkspace(hierarchy.nodeCount));
+    }
+
+    // The workspaces can be reused for another hierarchy over the same nodes.
+    ContractionHierarchyEngine(ContractionHierarchy hierarchy, QueryWorkspace forward, QueryWorkspace backward) {
+        if (forward.nodeCount() != hierarchy.nodeCount || backward.nodeCount() != hierarchy.nodeCount
+                || forward == backward) {
+            throw new IllegalArgumentException("Needs two distinct workspaces for " + hierarchy.nodeCount + " nodes");
+        }
+        this.hierarchy = hierarchy;
+        this.forward = forward;
+        this.backward = backward;
+        forwardEdges = new int[hierarchy.nodeCount];
+        backwardEdges = new int[hierarchy.nodeCount];
+    }
+
+    // Runs the next queries on hierarchy, e.g. one rebuilt after a live update,
+    // keeping the workspaces and all other scratch state.
+    void rebind(ContractionHierarchy hierarchy) {
+        if (hierarchy.nodeCount != forward.nodeCount()) {
+            throw new IllegalArgumentException("Engine for " + forward.nodeCount()
+                    + " nodes cannot search a hierarchy with " + hierarchy.nodeCount + " nodes");
+        }
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public int[] route(int source, int target) {
+        int meeting = search(source, target);
+        if (meeting == QueryWorkspace.NO_PREDECESSOR) {
+            return new int[0];
+        }
+        // Hierarchy path: source .. meeting from the forward search, then meeting .. target.
+        int forwardLength = 0;
+        for (int node = meeting; node != source; node = forward.predecessor(node)) {
+            forwardLength++;
+        }
+        int[] upward = new int[forwardLength + 1];
+        for (int node = meeting, i = forwardLength; i >= 0; node = forward.predecessor(node), i--) {
+            upward[i] = node;
+        }
+
+        unpackedCount = 0;
+        append(source);
+        for (int i = 1; i < upward.length; i++) {
+            unpack(forwardEdges[upward[i]], upward[i - 1], upward[i]);
+        }
+        for (int node = meeting; node != target; node = backward.predecessor(node)) {
+            unpack(backwardEdges[node], node, backward.predecessor(node));
+        }
+        return Arrays.copyOf(unpacked, unpackedCount);
+    }
+
+    // Shortest distance from source to target, INFINITY if target is unreachable.
+    long distance(int source, int target) {
+        int meeting = search(source, target);
+        if (meeting == QueryWorkspace.NO_PREDECESSOR) {
+            return QueryWorkspace.INFINITY;
+        }
+        return forward.distance(meeting) + backward.distance(meeting);
+    }
+
+    @Override
+    public int settledNodes() {
+        return settledNodes;
+    }
+
+    private int search(int source, int target) {
+        forward.reset();
+        backward.reset();
+        settledNodes = 0;
+        forward.reach(source, 0, source);
+        backward.reach(target, 0, target);
+        IndexedMinHeap forwardHeap = forward.heap();
+        IndexedMinHeap backwardHeap = backward.heap();
+        forwardHeap.insertOrDecrease(source, 0);
+        backwardHeap.insertOrDecrease(target, 0);
+
+        long mu = QueryWorkspace.INFINITY;
+        int meeting = QueryWorkspace.NO_PREDECESSOR;
+        int relaxedEdges = 0;
+        int heapPushes = 2;
+        while (true) {
+            boolean forwardActive = !forwardHeap.isEmpty() && forwardHeap.minKey() < mu;
+            boolean backwardActive = !backwardHeap.isEmpty() && backwardHeap.minKey() < mu;
+            if (!forwardActive && !backwardActive) {
+                break;
+            }
+            boolean expandForward = forwardActive
+                    && (!backwardActive || forwardHeap.minKey() <= backwardHeap.minKey());
+            QueryWorkspace self = expandForward ? forward : backward;
+            QueryWorkspace other = expandForward ? backward : forward;
+            int[] edges = expandForward ? forwardEdges : backwardEdges;
+            IndexedMinHeap heap = self.heap();
+
+            int current = heap.removeMin();
+            settledNodes++;
+            long currentDistance = self.distance(current);
+            if (QueryMetrics.ENABLED) {
+                relaxedEdges += hierarchy.offsets[current + 1] - hierarchy.offsets[current];
+            }
+            if (other.isReached(current) && currentDistance + other.distance(current) < mu) {
+                mu = currentDistance + other.distance(current);
+                meeting = current;
+            }
+            if (stalled(self, current, currentDistance)) {
+                continue;
+            }
+            for (int edge = hierarchy.offsets[current]; edge < hierarchy.offsets[current + 1]; edge++) {
+                int neighbor = hierarchy.targets[edge];
+                long viaCurrent = currentDistance + hierarchy.weights[edge];
+                if (viaCurrent < self.distance(neighbor)) {
+                    self.reach(neighbor, viaCurrent, current);
+                    edges[neighbor] = edge;
+                    heap.insertOrDecrease(neighbor, viaCurrent);
+                    if (QueryMetrics.ENABLED) {
+                        heapPushes++;
+                    }
+                }
+            }
+        }
+        if (QueryMetrics.ENABLED) {
+            QueryMetrics.recordSearch(settledNodes, relaxedEdges, 0, heapPushes);
+        }
+        return meeting;
+    }
+
+    // Stall-on-demand: a higher neighbor that this side reached with a shorter
+    // path to node proves node's distance is not a shortest one, so no shortest
+    // up-down path continues upward from node and its edges need not be relaxed.
+    private boolean stalled(QueryWorkspace self, int node, long distance) {
+        for (int edge = hierarchy.offsets[node]; edge < hierarchy.offsets[node + 1]; edge++) {
+            int neighbor = hierarchy.targets[edge];
+            if (self.isReached(neighbor) && self.distance(neighbor) + hierarchy.weights[edge] < distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Appends the original nodes of the hierarchy edge from -> to, except from itself.
+    private void unpack(int edge, int from, int to) {
+        int top = 0;
+        unpackStack = push(unpackStack, top, edge, from, to);
+        top += 3;
+        while (top > 0) {
+            top -= 3;
+            int e = unpackStack[top];
+            int a = unpackStack[top + 1];
+            int b = unpackStack[top + 2];
+            int middle = hierarchy.middles[e];
+            if (middle == ContractionHierarchy.NO_MIDDLE) {
+                append(b);
+            } else {
+                // e runs from its lower to its higher end point, a may be either one.
+                boolean upward = hierarchy.targets[e] == b;
+                int toA = upward ? hierarchy.lowerHalves[e] : hierarchy.upperHalves[e];
+                int toB = upward ? hierarchy.upperHalves[e] : hierarchy.lowerHalves[e];
+                // a -> middle has to be unpacked first, so it goes on top.
+                unpackStack = push(unpackStack, top, toB, middle, b);
+                top += 3;
+                unpackStack = push(unpackStack, top, toA, a, middle);
+                top += 3;
+            }
+        }
+    }
+
+    private static int[] push(int[] stack, int top, int edge, int a, int b) {
+        if (top + 3 > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = edge;
+        stack[top + 1] = a;
+        stack[top + 2] = b;
+        return stack;
+    }
+
+    private void append(int node) {
+        if (unpackedCount == unpacked.length) {
+            unpacked = Arrays.copyOf(unpacked, unpackedCount * 2);
+        }
+        unpacked[unpackedCount++] = node;
+    }
+}
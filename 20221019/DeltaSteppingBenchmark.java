@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Speedup of DeltaSteppingEngine over the thread count on a synthetic region
+// (see SyntheticGraphs.grid and geometric): median time of one-to-all
+// runs from random sources with 1, 2, 4, ... threads up to the number of
+// processors, next to sequential Dijkstra. Every run is checked against
+// Dijkstra: same distances, and every predecessor lies on a shortest path.
+// Prints one CSV row per thread count.
+// Usage: java DeltaSteppingBenchmark [nodes] [grid|geometric] [threads, e.g. 1,2,4,8] [runs] [delta]
+public class DeltaSteppingBenchmark {
+
+    private static final int WARMUP_RUNS = 3;
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String shape = args.length > 1 ? args[1] : "grid";
+        int[] threads = args.length > 2 ? parseThreads(args[2]) : defaultThreads();
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        Random random = new Random(42);
+        RoutingGraph graph = "geometric".equals(shape)
+                ? SyntheticGraphs.geometric(nodes, random) : SyntheticGraphs.grid(nodes, random);
+        long delta = args.length > 4 ? Long.parseLong(args[4]) : DeltaSteppingEngine.defaultDelta(graph);
+        int[] sources = new int[WARMUP_RUNS + runs];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(graph.nodeCount);
+        }
+        System.err.println(graph + ", delta " + delta + ", " + Runtime.getRuntime().availableProcessors()
+                + " processors");
+
+        DijkstraEngine dijkstra = new DijkstraEngine(graph);
+        long[][] expected = new long[sources.length][];
+        double[] dijkstraMillis = new double[runs];
+        for (int i = 0; i < sources.length; i++) {
+            long start = System.nanoTime();
+            dijkstra.run(sources[i]);
+            if (i >= WARMUP_RUNS) {
+                dijkstraMillis[i - WARMUP_RUNS] = (System.nanoTime() - start) / 1e6;
+            }
+            expected[i] = new long[graph.nodeCount];
+            for (int node = 0; node < graph.nodeCount; node++) {
+                expected[i][node] = dijkstra.distance(node);
+            }
+        }
+        double dijkstraMedian = median(dijkstraMillis);
+
+        System.out.println("engine,threads,nodes,edges,delta,median ms,speedup vs 1 thread,speedup vs dijkstra");
+        System.out.printf(Locale.ROOT, "dijkstra,1,%d,%d,,%.1f,,1.00%n",
+                graph.nodeCount, graph.edgeCount(), dijkstraMedian);
+        double oneThread = 0;
+        for (int threadCount : threads) {
+            ForkJoinPool pool = new ForkJoinPool(threadCount);
+            try {
+                DeltaSteppingEngine engine = new DeltaSteppingEngine(graph, pool, delta);
+                double[] millis = new double[runs];
+                for (int i = 0; i < sources.length; i++) {
+                    long start = System.nanoTime();
+                    engine.run(sources[i]);
+                    if (i >= WARMUP_RUNS) {
+                        millis[i - WARMUP_RUNS] = (System.nanoTime() - start) / 1e6;
+                    }
+                    verify(graph, engine, sources[i], expected[i]);
+                }
+                double median = median(millis);
+                if (oneThread == 0) {
+                    oneThread = median;
+                }
+                System.out.printf(Locale.ROOT, "delta-stepping,%d,%d,%d,%d,%.1f,%.2f,%.2f%n", threadCount,
+                        graph.nodeCount, graph.edgeCount(), delta, median, oneThread / median, dijkstraMedian / median);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void verify(RoutingGraph graph, DeltaSteppingEngine engine, int source, long[] expected) {
+        for (int node = 0; node < graph.nodeCount; node++) {
+            if (engine.distance(node) != expected[node]) {
+                throw new IllegalStateException("Distance from " + source + " to " + node + " is "
+                        + engine.distance(node) + " instead of " + expected[node]);
+            }
+            int predecessor = engine.predecessor(node);
+            boolean valid = expected[node] == DeltaSteppingEngine.INFINITY
+                    ? predecessor == DeltaSteppingEngine.NO_PREDECESSOR
+                    : node == source ? predecessor == source
+                    : predecessor >= 0 && expected[predecessor] + graph.edgeLength(predecessor, node) == expected[node];
+            if (!valid) {
+                throw new IllegalStateException("Predecessor " + predecessor + " of " + node + " is wrong");
+            }
+        }
+    }
+
+    private static int[] defaultThreads() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = 1;
+        while (1 << count <= processors) {
+            count++;
+        }
+        int[] threads = new int[count];
+        for (int i = 0; i < count; i++) {
+            threads[i] = 1 << i;
+        }
+        if (threads[count - 1] != processors) {
+            threads = Arrays.copyOf(threads, count + 1);
+            threads[count] = processors;
+        }
+        return threads;
+    }
+
+    private static int[] parseThreads(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,315 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+// Parallel one-to-all shortest paths with delta-stepping (Meyer and Sanders).
+// Nodes are kept in buckets of width delta by tentative distance. The lowest
+// bucket is emptied in rounds that relax the light edges (length <= delta)
+// of all its nodes at once, since they can put nodes back into the same
+// bucket; afterwards the heavy edges of every node removed from the bucket
+// are relaxed once. Each round is spread over a ForkJoinPool, the threads
+// lower distances with compare-and-set; distributing the changed nodes over
+// the buckets happens between rounds on the calling thread.
+// Predecessors are not written during the rounds, two threads lowering the
+// same node could leave the predecessor of the larger distance. Instead every
+// node remembers the round that set its final distance, and afterwards its
+// predecessor is a neighbor u with dist(u) + length = dist(v) that got its
+// distance in an earlier round, which keeps the tree acyclic even with streets
+// of length 0. Looking at neighbors as incoming edges relies on the
+// RoutingGraph being symmetric, as built from bidirectional streets.
+// Not thread-safe itself, one run at a time.
+final class DeltaSteppingEngine {
+
+    static final long INFINITY = QueryWorkspace.INFINITY;
+    static final int NO_PREDECESSOR = QueryWorkspace.NO_PREDECESSOR;
+
+    // Frontier nodes per parallel task; smaller frontiers are relaxed on the calling thread.
+    private static final int NODES_PER_TASK = 512;
+    private static final int MAX_BUCKETS = 1 << 20;
+
+    private final RoutingGraph graph;
+    private final ForkJoinPool pool;
+    private final long delta;
+    private final AtomicLongArray distances;
+    // Round that last lowered the distance of each node, doubles as "changed in this round" mark.
+    private final AtomicIntegerArray rounds;
+    private final int[] predecessors;
+
+    // Cyclic array of buckets: with streets up to maxWeight, all tentative
+    // distances lie within that many buckets above the current one.
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private int pendingEntries;
+
+    // Nodes lowered by the current round, in no particular order.
+    private final int[] changed;
+    private final AtomicInteger changedCount = new AtomicInteger();
+    // Nodes of the current bucket: frontier of the next light round and all
+    // nodes removed from the bucket so far for the heavy round.
+    private int[] frontier;
+    private long[] frontierDistances;
+    private int frontierSize;
+    private int[] removed;
+    private int removedSize;
+    private final int[] frontierMarks;
+    private final int[] removedMarks;
+    private int round;
+    private int source = NO_PREDECESSOR;
+
+    DeltaSteppingEngine(RoutingGraph graph, ForkJoinPool pool) {
+        this(graph, pool, defaultDelta(graph));
+    }
+
+    DeltaSteppingEngine(RoutingGraph graph, ForkJoinPool pool, long delta) {
+        if (delta < 1) {
+            throw new IllegalArgumentException("delta must be positive, was " + delta);
+        }
+        this.graph = graph;
+        this.pool = pool;
+        this.delta = delta;
+        distances = new AtomicLongArray(graph.nodeCount);
+        rounds = new AtomicIntegerArray(graph.nodeCount);
+        predecessors = new int[graph.nodeCount];
+        long bucketCount = graph.maxWeight / delta + 2;
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException("delta " + delta + " is too small for streets up to "
+                    + graph.maxWeight);
+        }
+        // allocated when first used
+        buckets = new int[(int) bucketCount][];
+        bucketSizes = new int[(int) bucketCount];
+        changed = new int[graph.nodeCount];
+        frontier = new int[16];
+        frontierDistances = new long[16];
+        removed = new int[16];
+        frontierMarks = new int[graph.nodeCount];
+        removedMarks = new int[graph.nodeCount];
+    }
+
+    // About the average street length, so a light round covers one typical street.
+    static long defaultDelta(RoutingGraph graph) {
+        long sum = 0;
+        for (int weight : graph.weights) {
+            sum += weight;
+        }
+        long average = graph.edgeCount() == 0 ? 1 : sum / graph.edgeCount();
+        return Math.max(Math.max(1, average), graph.maxWeight / (MAX_BUCKETS - 2) + 1);
+    }
+
+    long delta() {
+        return delta;
+    }
+
+    // Computes the shortest paths from source to every reachable node.
+    void run(int source) {
+        this.source = source;
+        pool.submit(() -> IntStream.range(0, graph.nodeCount).parallel()
+                .forEach(node -> distances.set(node, INFINITY))).join();
+        Arrays.fill(bucketSizes, 0);
+        pendingEntries = 0;
+        int firstRound = nextRound();
+        distances.set(source, 0);
+        rounds.set(source, firstRound);
+        addToBucket(source, 0);
+
+        long bucket = 0;
+        while (pendingEntries > 0) {
+            bucket = nextBucket(bucket);
+            int bucketMark = takeBucket(bucket);
+            removedSize = 0;
+            while (frontierSize > 0) {
+                for (int i = 0; i < frontierSize; i++) {
+                    int node = frontier[i];
+                    if (removedMarks[node] != bucketMark) {
+                        removedMarks[node] = bucketMark;
+                        removed = append(removed, removedSize++, node);
+                    }
+                }
+                relax(frontier, frontierDistances, frontierSize, true);
+                distribute(bucket);
+            }
+            // The distances of the removed nodes are final, no round can lower them any more.
+            relax(removed, null, removedSize, false);
+            distribute(bucket);
+        }
+        computePredecessors(firstRound);
+    }
+
+    long distance(int node) {
+        return distances.get(node);
+    }
+
+    // The source has itself as predecessor, unreachable nodes have NO_PREDECESSOR.
+    int predecessor(int node) {
+        return predecessors[node];
+    }
+
+    // Node ids from the source of the last run to target, empty if target is unreachable.
+    int[] path(int target) {
+        return QueryWorkspace.path(predecessors, source, target);
+    }
+
+    // One round: relaxes the light or the heavy edges of nodes[0 .. size) in
+    // parallel. A light round starts from the distances the nodes had when the
+    // round began (nodeDistances), even if another thread lowers them during
+    // it; so every distance set in a round stems from one set in an earlier
+    // round, which computePredecessors relies on. null reads the current ones.
+    private void relax(int[] nodes, long[] nodeDistances, int size, boolean light) {
+        int currentRound = nextRound();
+        changedCount.set(0);
+        int tasks = (size + NODES_PER_TASK - 1) / NODES_PER_TASK;
+        if (tasks <= 1) {
+            relax(nodes, nodeDistances, 0, size, light, currentRound);
+        } else {
+            pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(task -> relax(nodes, nodeDistances,
+                    task * NODES_PER_TASK, Math.min(size, (task + 1) * NODES_PER_TASK), light, currentRound)))
+                    .join();
+        }
+    }
+
+    private void relax(int[] nodes, long[] nodeDistances, int from, int to, boolean light, int currentRound) {
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        int[] weights = graph.weights;
+        for (int i = from; i < to; i++) {
+            int node = nodes[i];
+            long nodeDistance = nodeDistances == null ? distances.get(node) : nodeDistances[i];
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                if (weights[edge] <= delta != light) {
+                    continue;
+                }
+                int neighbor = targets[edge];
+                long viaNode = nodeDistance + weights[edge];
+                long current = distances.get(neighbor);
+                while (viaNode < current) {
+                    if (distances.compareAndSet(neighbor, current, viaNode)) {
+                        if (rounds.getAndSet(neighbor, currentRound) != currentRound) {
+                            changed[changedCount.getAndIncrement()] = neighbor;
+                        }
+                        break;
+                    }
+                    current = distances.get(neighbor);
+                }
+            }
+        }
+    }
+
+    // Moves the nodes changed by the last round into their buckets; those that
+    // belong to the current bucket form the next light round's frontier.
+    private void distribute(long bucket) {
+        frontierSize = 0;
+        int count = changedCount.get();
+        for (int i = 0; i < count; i++) {
+            int node = changed[i];
+            long nodeDistance = distances.get(node);
+            long nodeBucket = nodeDistance / delta;
+            if (nodeBucket == bucket) {
+                if (frontierMarks[node] != round) {
+                    frontierMarks[node] = round;
+                    addToFrontier(node, nodeDistance);
+                }
+            } else {
+                addToBucket(node, nodeBucket);
+            }
+        }
+    }
+
+    // Lowest non-empty bucket after current; only called while entries are pending.
+    private long nextBucket(long current) {
+        long bucket = current;
+        while (bucketSizes[(int) (bucket % buckets.length)] == 0) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    // Frontier of the bucket's first light round: its entries that still
+    // belong to it, without duplicates. Stale entries of nodes that moved to a
+    // lower bucket are dropped. Returns a mark that is unique to this bucket.
+    private int takeBucket(long bucket) {
+        int slot = (int) (bucket % buckets.length);
+        int[] entries = buckets[slot];
+        int size = bucketSizes[slot];
+        bucketSizes[slot] = 0;
+        pendingEntries -= size;
+        int mark = nextRound();
+        frontierSize = 0;
+        for (int i = 0; i < size; i++) {
+            int node = entries[i];
+            long nodeDistance = distances.get(node);
+            if (nodeDistance / delta == bucket && frontierMarks[node] != mark) {
+                frontierMarks[node] = mark;
+                addToFrontier(node, nodeDistance);
+            }
+        }
+        return mark;
+    }
+
+    private void addToFrontier(int node, long distance) {
+        if (frontierSize == frontier.length) {
+            frontier = Arrays.copyOf(frontier, frontierSize * 2);
+            frontierDistances = Arrays.copyOf(frontierDistances, frontierSize * 2);
+        }
+        frontier[frontierSize] = node;
+        frontierDistances[frontierSize++] = distance;
+    }
+
+    private void addToBucket(int node, long bucket) {
+        int slot = (int) (bucket % buckets.length);
+        if (buckets[slot] == null) {
+            buckets[slot] = new int[16];
+        }
+        buckets[slot] = append(buckets[slot], bucketSizes[slot]++, node);
+        pendingEntries++;
+    }
+
+    private void computePredecessors(int firstRound) {
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        int[] weights = graph.weights;
+        pool.submit(() -> IntStream.range(0, graph.nodeCount).parallel().forEach(node -> {
+            long distance = distances.get(node);
+            int predecessor = NO_PREDECESSOR;
+            if (node == source) {
+                predecessor = source;
+            } else if (distance != INFINITY) {
+                int nodeRound = rounds.get(node);
+                for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                    int neighbor = targets[edge];
+                    int neighborRound = rounds.get(neighbor);
+                    if (neighborRound >= firstRound && neighborRound < nodeRound
+                            && distances.get(neighbor) + weights[edge] == distance) {
+                        predecessor = neighbor;
+                        break;
+                    }
+                }
+            }
+            predecessors[node] = predecessor;
+        })).join();
+    }
+
+    private int nextRound() {
+        round++;
+        if (round == Integer.MAX_VALUE) {
+            // Only after ~2^31 rounds: marks could otherwise collide with stale ones.
+            for (int node = 0; node < graph.nodeCount; node++) {
+                rounds.set(node, 0);
+            }
+            Arrays.fill(frontierMarks, 0);
+            Arrays.fill(removedMarks, 0);
+            round = 1;
+        }
+        return round;
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        array[size] = value;
+        return array;
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Arrays;
+
+// Dial's bucket queue: maxWeight + 1 buckets used as a ring. While the queue
+// is monotone, all keys lie in [lastKey, lastKey + maxWeight], so bucket
+// key % (maxWeight + 1) holds only entries of that one key and the key does
+// not have to be stored. Adding is O(1), removing costs the empty buckets
+// skipped, at most maxWeight per distinct distance.
+// Buckets are singly linked lists over entry slots that are reused after clear().
+final class DialQueue implements MonotoneQueue {
+
+    // Larger rings are mostly empty buckets to skip, the radix heap is better there.
+    static final int MAX_WEIGHT = 1 << 12;
+
+    private static final int EMPTY = -1;
+
+    private final int[] heads;
+    private int[] nodes = new int[64];
+    private int[] next = new int[64];
+    private int entries;
+    private int size;
+    private long lastKey;
+
+    DialQueue(int maxWeight) {
+        if (maxWeight < 0 || maxWeight > MAX_WEIGHT) {
+            throw new IllegalArgumentException("Street lengths up to " + maxWeight + " need a radix heap");
+        }
+        heads = new int[maxWeight + 1];
+        Arrays.fill(heads, EMPTY);
+    }
+
+    @Override
+    public void add(int node, long key) {
+        if (entries == nodes.length) {
+            nodes = Arrays.copyOf(nodes, entries * 2);
+            next = Arrays.copyOf(next, entries * 2);
+        }
+        int bucket = (int) (key % heads.length);
+        nodes[entries] = node;
+        next[entries] = heads[bucket];
+        heads[bucket] = entries++;
+        size++;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int removeMin() {
+        int bucket = (int) (lastKey % heads.length);
+        while (heads[bucket] == EMPTY) {
+            lastKey++;
+            bucket = bucket + 1 == heads.length ? 0 : bucket + 1;
+        }
+        int entry = heads[bucket];
+        heads[bucket] = next[entry];
+        size--;
+        return nodes[entry];
+    }
+
+    @Override
+    public long lastKey() {
+        return lastKey;
+    }
+
+    // O(maxWeight) if entries are left, e.g. after a point-to-point query.
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(heads, EMPTY);
+        }
+        entries = 0;
+        size = 0;
+        lastKey = 0;
+    }
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+
+// Dijkstra's algorithm on any AdjacencyGraph; a RoutingGraph is walked over
+// its CSR arrays directly, other representations (e.g. a memory-mapped
+// snapshot) through a cursor. All scratch state lives in a QueryWorkspace
+// that is reset lazily, so a query allocates nothing except the extracted
+// path and its setup cost does not depend on the graph size.
+// An engine is not thread-safe, use one engine (or workspace) per thread.
+final class DijkstraEngine implements RoutingEngine {
+
+    static final long INFINITY = QueryWorkspace.INFINITY;
+    static final int NO_PREDECESSOR = QueryWorkspace.NO_PREDECESSOR;
+
+    private AdjacencyGraph graph;
+    // graph itself if it is a RoutingGraph, otherwise null and edges are read through cursor
+    private RoutingGraph csr;
+    private AdjacencyGraph.Cursor cursor;
+    private final QueryWorkspace workspace;
+    private int source = NO_PREDECESSOR;
+    private int settledNodes;
+    // Nodes marked with targetMark are targets of the current query.
+    private final int[] targetMarks;
+    private int targetMark;
+    // Settle order of runWithin, allocated by its first call.
+    private int[] settledOrder;
+    // Counters of the running search for QueryMetrics.
+    private int relaxedEdges;
+    private int heapPushes;
+
+    DijkstraEngine(AdjacencyGraph graph) {
+        this(graph, new QueryWorkspace(graph.nodeCount()));
+    }
+
+    DijkstraEngine(AdjacencyGraph graph, QueryWorkspace workspace) {
+        if (workspace.nodeCount() != graph.nodeCount()) {
+            throw new IllegalArgumentException("Workspace for " + workspace.nodeCount()
+                    + " nodes cannot serve a graph with " + graph.nodeCount() + " nodes");
+        }
+        this.workspace = workspace;
+        targetMarks = new int[graph.nodeCount()];
+        rebind(graph);
+    }
+
+    // Runs the next queries on graph, e.g. a newer LiveRoutingGraph snapshot of
+    // the same nodes, keeping the workspace and all other scratch state.
+    void rebind(AdjacencyGraph graph) {
+        if (graph.nodeCount() != workspace.nodeCount()) {
+            throw new IllegalArgumentException("Engine for " + workspace.nodeCount()
+                    + " nodes cannot search a graph with " + graph.nodeCount() + " nodes");
+        }
+        this.graph = graph;
+        csr = graph instanceof RoutingGraph ? (RoutingGraph) graph : null;
+        cursor = csr == null ? graph.cursor() : null;
+    }
+
+    AdjacencyGraph graph() {
+        return graph;
+    }
+
+    QueryWorkspace workspace() {
+        return workspace;
+    }
+
+    // Computes the shortest paths from source to every reachable node.
+    void run(int source) {
+        nextTargetMark();
+        search(source, -1);
+    }
+
+    // Point-to-point query: stops as soon as target is settled and returns its
+    // distance. Only the path to target is final afterwards.
+    long run(int source, int target) {
+        nextTargetMark();
+        targetMarks[target] = targetMark;
+        search(source, 1);
+        return workspace.distance(target);
+    }
+
+    // One-to-many query: stops once every node in targets[from .. to) is settled.
+    void run(int source, int[] targets, int from, int to) {
+        nextTargetMark();
+        int remaining = 0;
+        for (int i = from; i < to; i++) {
+            if (targetMarks[targets[i]] != targetMark) {
+                targetMarks[targets[i]] = targetMark;
+                remaining++;
+            }
+        }
+        if (remaining == 0) {
+            start(source);
+            return;
+        }
+        search(source, remaining);
+    }
+
+    // Bounded one-to-all query: settles exactly the nodes within budget of
+    // source, INFINITY for all reachable nodes, and returns their number. They
+    // are available through settled(i) in order of distance; their distances and
+    // predecessors are final, those of the nodes reached beyond budget are not.
+    int runWithin(int source, long budget) {
+        start(source);
+        if (settledOrder == null) {
+            settledOrder = new int[graph.nodeCount()];
+        }
+        IndexedMinHeap heap = workspace.heap();
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty() && heap.minKey() <= budget) {
+            int current = heap.removeMin();
+            settledOrder[settledNodes++] = current;
+            relaxEdges(current, null, -1);
+        }
+        if (QueryMetrics.ENABLED) {
+            QueryMetrics.recordSearch(settledNodes, relaxedEdges, 0, heapPushes);
+        }
+        return settledNodes;
+    }
+
+    // The i-th node settled by the last runWithin.
+    int settled(int i) {
+        return settledOrder[i];
+    }
+
+    // Point-to-point A* query, the heap is ordered by distance plus the
+    // heuristic's lower bound to target.
+    long runAStar(int source, int target, Heuristic heuristic) {
+        start(source);
+        IndexedMinHeap heap = workspace.heap();
+        heap.insertOrDecrease(source, heuristic.estimate(source, target));
+        while (!heap.isEmpty()) {
+            int current = heap.removeMin();
+            settledNodes++;
+            if (current == target) {
+                break;
+            }
+            relaxEdges(current, heuristic, target);
+        }
+        if (QueryMetrics.ENABLED) {
+            QueryMetrics.recordSearch(settledNodes, relaxedEdges, 0, heapPushes);
+        }
+        return workspace.distance(target);
+    }
+
+    // Settles nodes until the heap is empty or remainingTargets marked nodes are
+    // settled; a negative count never stops early.
+    private void search(int source, int remainingTargets) {
+        start(source);
+        IndexedMinHeap heap = workspace.heap();
+        heap.insertOrDecrease(source, 0);
+        while (!heap.isEmpty()) {
+            int current = heap.removeMin();
+            settledNodes++;
+            if (targetMarks[current] == targetMark && --remainingTargets == 0) {
+                break;
+            }
+            relaxEdges(current, null, -1);
+        }
+        if (QueryMetrics.ENABLED) {
+            QueryMetrics.recordSearch(settledNodes, relaxedEdges, 0, heapPushes);
+        }
+    }
+
+    // Relaxes the edges of the settled node current. Without a heuristic the heap
+    // is keyed by distance, with one by distance plus its lower bound to target.
+    private void relaxEdges(int current, Heuristic heuristic, int target) {
+        long currentDistance = workspace.distance(current);
+        if (csr != null) {
+            int[] targets = csr.targets;
+            int[] weights = csr.weights;
+            int end = csr.offsets[current + 1];
+            for (int edge = csr.offsets[current]; edge < end; edge++) {
+                relax(current, targets[edge], currentDistance + weights[edge], heuristic, target);
+            }
+            if (QueryMetrics.ENABLED) {
+                relaxedEdges += end - csr.offsets[current];
+            }
+        } else {
+            cursor.moveTo(current);
+            while (cursor.next()) {
+                relax(current, cursor.target(), currentDistance + cursor.weight(), heuristic, target);
+                if (QueryMetrics.ENABLED) {
+                    relaxedEdges++;
+                }
+            }
+        }
+    }
+
+    private void relax(int current, int neighbor, long viaCurrent, Heuristic heuristic, int target) {
+        if (viaCurrent < workspace.distance(neighbor)) {
+            workspace.reach(neighbor, viaCurrent, current);
+            workspace.heap().insertOrDecrease(neighbor,
+                    heuristic == null ? viaCurrent : viaCurrent + heuristic.estimate(neighbor, target));
+            if (QueryMetrics.ENABLED) {
+                heapPushes++;
+            }
+        }
+    }
+
+    private void nextTargetMark() {
+        targetMark++;
+        if (targetMark == Integer.MAX_VALUE) {
+            Arrays.fill(targetMarks, 0);
+            targetMark = 1;
+        }
+    }
+
+    private void start(int source) {
+        workspace.reset();
+        this.source = source;
+        workspace.reach(source, 0, source);
+        settledNodes = 0;
+        relaxedEdges = 0;
+        heapPushes = 1;
+    }
+
+    @Override
+    public int[] route(int source, int target) {
+        run(source, target);
+        return path(target);
+    }
+
+    @Override
+    public int settledNodes() {
+        return settledNodes;
+    }
+
+    long distance(int node) {
+        return workspace.distance(node);
+    }
+
+    // The source has itself as predecessor, unreached nodes have NO_PREDECESSOR.
+    int predecessor(int node) {
+        return workspace.predecessor(node);
+    }
+
+    // Node ids from the source of the last run to target, empty if target is unreachable.
+    int[] path(int target) {
+        return workspace.path(source, target);
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Travel distances from every source to every target, stored row-major in a
+// flat long[]: the distance from sources[row] to targets[column] is at
+// row * columns + column, INFINITY if the target is unreachable.
+// Both ways of computing it spread the sources over a ForkJoinPool. The
+// per-search scratch state comes from a pool of idle searches that only
+// lives for one computation, so the pool threads do not keep O(n) arrays
+// alive afterwards, as a ThreadLocal would.
+final class DistanceMatrix {
+
+    static final long INFINITY = QueryWorkspace.INFINITY;
+
+    final int rows;
+    final int columns;
+    final long[] distances;
+
+    private DistanceMatrix(int rows, int columns) {
+        if ((long) rows * columns > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(rows + "x" + columns + " does not fit into one array");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        distances = new long[rows * columns];
+    }
+
+    long get(int row, int column) {
+        return distances[row * columns + column];
+    }
+
+    // One one-to-many Dijkstra per source, each stops once all targets are settled.
+    static DistanceMatrix compute(AdjacencyGraph graph, int[] sources, int[] targets, ForkJoinPool pool) {
+        DistanceMatrix matrix = new DistanceMatrix(sources.length, targets.length);
+        ConcurrentLinkedQueue<DijkstraEngine> idle = new ConcurrentLinkedQueue<>();
+        pool.submit(() -> IntStream.range(0, sources.length).parallel().forEach(row -> {
+            DijkstraEngine engine = idle.poll();
+            if (engine == null) {
+                engine = new DijkstraEngine(graph);
+            }
+            engine.run(sources[row], targets, 0, targets.length);
+            for (int column = 0; column < targets.length; column++) {
+                matrix.distances[row * targets.length + column] = engine.distance(targets[column]);
+            }
+            idle.add(engine);
+        })).join();
+        return matrix;
+    }
+
+    // Bucket-based many-to-many on a hierarchy: a complete upward search from
+    // every target leaves (column, distance) entries in the bucket of each node
+    // it settles. A complete upward search from a source then only has to scan
+    // the buckets of its settled nodes; the top node of every shortest path is
+    // settled from both ends.
+    static DistanceMatrix compute(ContractionHierarchy hierarchy, int[] sources, int[] targets, ForkJoinPool pool) {
+        DistanceMatrix matrix = new DistanceMatrix(sources.length, targets.length);
+        ConcurrentLinkedQueue<UpwardSearch> idle = new ConcurrentLinkedQueue<>();
+
+        // Backward phase, the per-target search spaces are merged into buckets afterwards.
+        int[][] spaceNodes = new int[targets.length][];
+        long[][] spaceDistances = new long[targets.length][];
+        pool.submit(() -> IntStream.range(0, targets.length).parallel().forEach(column -> {
+            UpwardSearch search = take(idle, hierarchy);
+            search.run(targets[column]);
+            spaceNodes[column] = Arrays.copyOf(search.settled, search.settledCount);
+            spaceDistances[column] = new long[search.settledCount];
+            for (int i = 0; i < search.settledCount; i++) {
+                spaceDistances[column][i] = search.workspace.distance(search.settled[i]);
+            }
+            idle.add(search);
+        })).join();
+
+        int[] bucketOffsets = new int[hierarchy.nodeCount + 1];
+        for (int[] nodes : spaceNodes) {
+            for (int node : nodes) {
+                bucketOffsets[node + 1]++;
+            }
+        }
+        for (int node = 0; node < hierarchy.nodeCount; node++) {
+            bucketOffsets[node + 1] += bucketOffsets[node];
+        }
+        int[] next = Arrays.copyOf(bucketOffsets, hierarchy.nodeCount);
+        int[] bucketColumns = new int[bucketOffsets[hierarchy.nodeCount]];
+        long[] bucketDistances = new long[bucketOffsets[hierarchy.nodeCount]];
+        for (int column = 0; column < targets.length; column++) {
+            for (int i = 0; i < spaceNodes[column].length; i++) {
+                int slot = next[spaceNodes[column][i]]++;
+                bucketColumns[slot] = column;
+                bucketDistances[slot] = spaceDistances[column][i];
+            }
+        }
+
+        // Forward phase, every source only writes its own row.
+        Arrays.fill(matrix.distances, INFINITY);
+        pool.submit(() -> IntStream.range(0, sources.length).parallel().forEach(row -> {
+            UpwardSearch search = take(idle, hierarchy);
+            search.run(sources[row]);
+            int rowStart = row * targets.length;
+            for (int i = 0; i < search.settledCount; i++) {
+                int node = search.settled[i];
+                long toNode = search.workspace.distance(node);
+                for (int slot = bucketOffsets[node]; slot < bucketOffsets[node + 1]; slot++) {
+                    long viaNode = toNode + bucketDistances[slot];
+                    if (viaNode < matrix.distances[rowStart + bucketColumns[slot]]) {
+                        matrix.distances[rowStart + bucketColumns[slot]] = viaNode;
+                    }
+                }
+            }
+            idle.add(search);
+        })).join();
+        return matrix;
+    }
+
+    private static UpwardSearch take(ConcurrentLinkedQueue<UpwardSearch> idle, ContractionHierarchy hierarchy) {
+        UpwardSearch search = idle.poll();
+        return search != null ? search : new UpwardSearch(hierarchy);
+    }
+
+    // Complete Dijkstra along the upward edges of a hierarchy, remembers the
+    // settled nodes in settling order.
+    private static final class UpwardSearch {
+
+        private final ContractionHierarchy hierarchy;
+        private final QueryWorkspace workspace;
+        private int[] settled = new int[64];
+        private int settledCount;
+
+        private UpwardSearch(ContractionHierarchy hierarchy) {
+            this.hierarchy = hierarchy;
+            workspace = new QueryWorkspace(hierarchy.nodeCount);
+        }
+
+        private void run(int source) {
+            workspace.reset();
+            settledCount = 0;
+            workspace.reach(source, 0, source);
+            IndexedMinHeap heap = workspace.heap();
+            heap.insertOrDecrease(source, 0);
+            while (!heap.isEmpty()) {
+                int current = heap.removeMin();
+                if (settledCount == settled.length) {
+                    settled = Arrays.copyOf(settled, settledCount * 2);
+                }
+                settled[settledCount++] = current;
+                long currentDistance = workspace.distance(current);
+                for (int edge = hierarchy.offsets[current]; edge < hierarchy.offsets[current + 1]; edge++) {
+                    int neighbor = hierarchy.targets[edge];
+                    long viaCurrent = currentDistance + hierarchy.weights[edge];
+                    if (viaCurrent < workspace.distance(neighbor)) {
+                        workspace.reach(neighbor, viaCurrent, current);
+                        heap.insertOrDecrease(neighbor, viaCurrent);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Scaling of DistanceMatrix over the thread count on a synthetic region (see
+// SyntheticGraphs.grid and geometric): median time of a sources x targets
+// matrix with 1, 2, 4, ... threads up to the number of processors, once with
+// one Dijkstra per source, once bucket-based on a ContractionHierarchy, and
+// once as sources x targets pairs through BatchRouter.distances. Every result
+// is checked against one-to-all DijkstraEngine runs.
+// Prints one CSV row per method and thread count.
+// Usage: java DistanceMatrixBenchmark [nodes] [grid|geometric] [sources] [targets] [threads, e.g. 1,2,4,8] [runs]
+public class DistanceMatrixBenchmark {
+
+    private static final int WARMUP_RUNS = 2;
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String shape = args.length > 1 ? args[1] : "grid";
+        int sourceCount = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int targetCount = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        int[] threads = args.length > 4 ? parseThreads(args[4]) : defaultThreads();
+        int runs = args.length > 5 ? Integer.parseInt(args[5]) : 5;
+        Random random = new Random(42);
+        RoutingGraph graph = "geometric".equals(shape)
+                ? SyntheticGraphs.geometric(nodes, random) : SyntheticGraphs.grid(nodes, random);
+        int[] sources = random.ints(sourceCount, 0, graph.nodeCount).toArray();
+        int[] targets = random.ints(targetCount, 0, graph.nodeCount).toArray();
+        System.err.println(graph + ", " + sourceCount + "x" + targetCount + ", "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        long[] expected = new long[sourceCount * targetCount];
+        DijkstraEngine dijkstra = new DijkstraEngine(graph);
+        for (int row = 0; row < sourceCount; row++) {
+            dijkstra.run(sources[row]);
+            for (int column = 0; column < targetCount; column++) {
+                expected[row * targetCount + column] = dijkstra.distance(targets[column]);
+            }
+        }
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        System.err.printf(Locale.ROOT, "%s in %.0f ms%n", hierarchy, (System.nanoTime() - start) / 1e6);
+
+        // BatchRouter answers pairs, so the matrix becomes sources x targets queries.
+        int[] pairSources = new int[sourceCount * targetCount];
+        int[] pairTargets = new int[sourceCount * targetCount];
+        for (int row = 0; row < sourceCount; row++) {
+            Arrays.fill(pairSources, row * targetCount, (row + 1) * targetCount, sources[row]);
+            System.arraycopy(targets, 0, pairTargets, row * targetCount, targetCount);
+        }
+
+        System.out.println("method,threads,nodes,sources,targets,median ms,speedup vs 1 thread");
+        String[] methods = {"dijkstra", "contraction-hierarchy", "batch"};
+        for (String method : methods) {
+            double oneThread = 0;
+            for (int threadCount : threads) {
+                ForkJoinPool pool = new ForkJoinPool(threadCount);
+                try {
+                    double[] millis = new double[runs];
+                    for (int i = 0; i < WARMUP_RUNS + runs; i++) {
+                        start = System.nanoTime();
+                        long[] distances;
+                        if ("dijkstra".equals(method)) {
+                            distances = DistanceMatrix.compute(graph, sources, targets, pool).distances;
+                        } else if ("contraction-hierarchy".equals(method)) {
+                            distances = DistanceMatrix.compute(hierarchy, sources, targets, pool).distances;
+                        } else {
+                            distances = new BatchRouter(graph, pool).distances(pairSources, pairTargets);
+                        }
+                        if (i >= WARMUP_RUNS) {
+                            millis[i - WARMUP_RUNS] = (System.nanoTime() - start) / 1e6;
+                        }
+                        verify(method, distances, expected, targetCount);
+                    }
+                    double median = median(millis);
+                    if (oneThread == 0) {
+                        oneThread = median;
+                    }
+                    System.out.printf(Locale.ROOT, "%s,%d,%d,%d,%d,%.1f,%.2f%n", method, threadCount,
+                            graph.nodeCount, sourceCount, targetCount, median, oneThread / median);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    private static void verify(String method, long[] distances, long[] expected, int targetCount) {
+        for (int i = 0; i < expected.length; i++) {
+            if (distances[i] != expected[i]) {
+                throw new IllegalStateException(method + " returned " + distances[i] + " instead of " + expected[i]
+                        + " for source " + i / targetCount + " and target " + i % targetCount);
+            }
+        }
+    }
+
+    private static int[] defaultThreads() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = 1;
+        while (1 << count <= processors) {
+            count++;
+        }
+        int[] threads = new int[count];
+        for (int i = 0; i < count; i++) {
+            threads[i] = 1 << i;
+        }
+        if (threads[count - 1] != processors) {
+            threads = Arrays.copyOf(threads, count + 1);
+            threads[count] = processors;
+        }
+        return threads;
+    }
+
+    private static int[] parseThreads(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
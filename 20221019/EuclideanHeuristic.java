@@ -0,0 +1,45 @@
+// Straight-line distance between city coordinates, scaled down so that it
+// never exceeds a street length. The scale is the smallest ratio of street
+// length to straight-line distance in the graph, which makes the estimate
+// consistent for arbitrary coordinate units.
+final class EuclideanHeuristic implements Heuristic {
+
+    private final double[] x;
+    private final double[] y;
+    private final double scale;
+
+    EuclideanHeuristic(AdjacencyGraph graph, double[] x, double[] y) {
+        int nodeCount = graph.nodeCount();
+        if (x.length != nodeCount || y.length != nodeCount) {
+            throw new IllegalArgumentException("Need coordinates for all " + nodeCount + " nodes");
+        }
+        this.x = x;
+        this.y = y;
+        double minRatio = Double.POSITIVE_INFINITY;
+        AdjacencyGraph.Cursor cursor = graph.cursor();
+        for (int node = 0; node < nodeCount; node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                double straight = straightDistance(node, cursor.target());
+                if (straight > 0) {
+                    minRatio = Math.min(minRatio, cursor.weight() / straight);
+                }
+            }
+        }
+        // Without any usable edge the heuristic degrades to plain Dijkstra. The tiny
+        // reduction absorbs floating point error in the ratio.
+        scale = minRatio == Double.POSITIVE_INFINITY ? 0 : minRatio * (1 - 1e-9);
+    }
+
+    @Override
+    public long estimate(int node, int target) {
+        // Rounding down keeps the estimate a lower bound.
+        return (long) (scale * straightDistance(node, target));
+    }
+
+    private double straightDistance(int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
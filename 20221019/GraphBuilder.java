@@ -0,0 +1,24 @@
+// Collects the edges of a street graph in any order and packs them into one
+// AdjacencyGraph representation: RoutingGraph.Builder into CSR arrays,
+// CompressedRoutingGraph.Builder straight into the varint encoding. The
+// parser (see RegionParser.parse with a GraphStorage) streams every street
+// into one, so no other representation has to exist first.
+interface GraphBuilder {
+
+    // Streets are bidirectional, thus every street becomes one edge per direction.
+    default GraphBuilder addStreet(int from, int to, int length) {
+        addEdge(from, to, length);
+        addEdge(to, from, length);
+        return this;
+    }
+
+    GraphBuilder addEdge(int from, int to, int length);
+
+    // Appends all edges of edges in their order, e.g. a chunk parsed by another thread.
+    default GraphBuilder addAll(RoutingGraph.Builder edges) {
+        edges.copyTo(this);
+        return this;
+    }
+
+    AdjacencyGraph build();
+}
@@ -0,0 +1,120 @@
+import java.util.Locale;
+import java.util.StringJoiner;
+
+// Where a region loaded from its RegionSnapshot keeps the street graph, e.g.
+// "java -Dnavigation.graph=heap Navigation batch ...". All of them return the
+// same paths, they differ in memory and search speed.
+enum GraphStorage {
+
+    // The read-only mapping of the snapshot itself: off the heap, loaded without
+    // copying, and held once in the page cache for every process on the host.
+    MAPPED {
+        @Override
+        AdjacencyGraph adopt(MappedRoutingGraph snapshot) {
+            return snapshot;
+        }
+
+        // CSR arrays, only until the snapshot is written and mapped
+        @Override
+        GraphBuilder builder(int nodeCount) {
+            return new RoutingGraph.Builder(nodeCount);
+        }
+    },
+    // CSR arrays copied from the mapping onto the heap, the fastest to search but
+    // private to the process.
+    HEAP {
+        @Override
+        AdjacencyGraph adopt(MappedRoutingGraph snapshot) {
+            return snapshot.toRoutingGraph();
+        }
+
+        @Override
+        GraphBuilder builder(int nodeCount) {
+            return new RoutingGraph.Builder(nodeCount);
+        }
+    },
+    // Varint-packed edges on the heap (CompressedRoutingGraph), about half the
+    // bytes of the CSR arrays per edge but slower to search. Packed straight
+    // from the parser or the mapped snapshot, no CSR arrays are built first.
+    COMPRESSED {
+        @Override
+        AdjacencyGraph adopt(MappedRoutingGraph snapshot) {
+            return CompressedRoutingGraph.compress(snapshot);
+        }
+
+        @Override
+        GraphBuilder builder(int nodeCount) {
+            return new CompressedRoutingGraph.Builder(nodeCount);
+        }
+    },
+    // CSR arrays in memory outside the heap (OffHeapRoutingGraph), private to the
+    // process and not limited to 2^31 edges. Parsed straight into its Builder or
+    // copied from the mapping. Needs the classes in offheap/, see offHeap.
+    OFF_HEAP {
+        @Override
+        AdjacencyGraph adopt(MappedRoutingGraph snapshot) {
+            return offHeap().copyOf(snapshot);
+        }
+
+        @Override
+        GraphBuilder builder(int nodeCount) {
+            return offHeap().builder(nodeCount);
+        }
+    };
+
+    // What offheap/OffHeapStorage provides.
+    interface Backend {
+
+        // A copy of graph whose memory is freed once the copy is unreachable.
+        AdjacencyGraph copyOf(AdjacencyGraph graph);
+
+        GraphBuilder builder(int nodeCount);
+    }
+
+    private static Backend offHeap;
+
+    // The graph of a freshly mapped snapshot in this storage.
+    abstract AdjacencyGraph adopt(MappedRoutingGraph snapshot);
+
+    // Where RegionParser streams the streets when there is no usable snapshot.
+    abstract GraphBuilder builder(int nodeCount);
+
+    // The off-heap graphs use the Foreign Function & Memory API of Java 22, so
+    // Maven only compiles them on Java 22 or newer (see the offheap profile in
+    // pom.xml) and they are looked up by name here.
+    static synchronized Backend offHeap() {
+        if (offHeap == null) {
+            try {
+                offHeap = (Backend) Class.forName("OffHeapStorage").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                throw new IllegalArgumentException("Off-heap graphs need the offheap classes and Java 22 or newer: "
+                        + e, e);
+            }
+        }
+        return offHeap;
+    }
+
+    // The storage for a name like "mapped", case-insensitive.
+    static GraphStorage byName(String name) {
+        String key = name.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        for (GraphStorage storage : values()) {
+            if (storage.name().equals(key)) {
+                return storage;
+            }
+        }
+        throw new IllegalArgumentException("Unknown graph storage " + name + ", expected one of " + names());
+    }
+
+    // "mapped, heap, compressed, off-heap", the names byName accepts.
+    static String names() {
+        StringJoiner names = new StringJoiner(", ");
+        for (GraphStorage storage : values()) {
+            names.add(storage.displayName());
+        }
+        return names.toString();
+    }
+
+    String displayName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,8 @@
+// Lower bound on the shortest-path distance between two nodes, used to direct
+// the search towards the target. Implementations must be consistent, i.e.
+// estimate(u, t) <= length(u, v) + estimate(v, t) for every edge (u, v); then
+// a node removed from the heap is settled and A* returns exact distances.
+interface Heuristic {
+
+    long estimate(int node, int target);
+}
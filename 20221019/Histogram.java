@@ -0,0 +1,110 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histogram of non-negative long values with log-linear buckets: values below
+// 16 get a bucket each, above that every power of two is split into 16
+// buckets, so a reported percentile is at most 1/16 above the recorded value.
+// The bucket array has a fixed size, recording allocates nothing and is
+// thread-safe without a lock.
+final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    final String name;
+    final String unit;
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    // Negative values are recorded as 0.
+    void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    long min() {
+        return count.get() == 0 ? 0 : min.get();
+    }
+
+    long max() {
+        return count.get() == 0 ? 0 : max.get();
+    }
+
+    // Smallest bucket bound that at least the fraction q of all values does not exceed, 0 if empty.
+    long percentile(double q) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(max(), upperBound(bucket));
+            }
+        }
+        return max();
+    }
+
+    void reset() {
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    // One CSV row matching CSV_HEADER.
+    String toCsv() {
+        return String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%d,%d,%d,%d", name, unit, count(), mean(), min(),
+                percentile(0.5), percentile(0.9), percentile(0.99), max());
+    }
+
+    static final String CSV_HEADER = "metric,unit,count,mean,min,p50,p90,p99,max";
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value that falls into bucket.
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (1L << exponent) + subBucket * width;
+        return lower + (width - 1);
+    }
+}
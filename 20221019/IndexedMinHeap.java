@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+// Indexed 4-ary min-heap over the node ids [0, capacity) with decrease-key.
+// Each node is contained at most once, so the search never has to skip stale
+// entries, and no objects are allocated after construction.
+final class IndexedMinHeap {
+
+    private static final int ARITY = 4;
+    private static final int ABSENT = -1;
+
+    private final int[] heap; // heap slot -> node
+    private final int[] position; // node -> heap slot, or ABSENT
+    private final long[] keys; // node -> key, only valid while contained
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(position, ABSENT);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int node) {
+        return position[node] != ABSENT;
+    }
+
+    long key(int node) {
+        return keys[node];
+    }
+
+    long minKey() {
+        return keys[heap[0]];
+    }
+
+    int peek() {
+        return heap[0];
+    }
+
+    // Inserts the node, or lowers its key if it is already contained.
+    // Returns false if the node is contained with a key that is not larger.
+    boolean insertOrDecrease(int node, long key) {
+        int slot = position[node];
+        if (slot == ABSENT) {
+            slot = size++;
+        } else if (key >= keys[node]) {
+            return false;
+        }
+        keys[node] = key;
+        siftUp(slot, node);
+        return true;
+    }
+
+    // Inserts the node or sets its key, which may also increase it.
+    void insertOrUpdate(int node, long key) {
+        int slot = position[node];
+        if (slot == ABSENT) {
+            keys[node] = key;
+            siftUp(size++, node);
+        } else if (key < keys[node]) {
+            keys[node] = key;
+            siftUp(slot, node);
+        } else {
+            keys[node] = key;
+            siftDown(slot, node);
+        }
+    }
+
+    int removeMin() {
+        int min = heap[0];
+        position[min] = ABSENT;
+        int last = heap[--size];
+        if (size > 0) {
+            siftDown(0, last);
+        }
+        return min;
+    }
+
+    // Empties the heap in O(size), nodes that were already removed cost nothing.
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot, int node) {
+        long key = keys[node];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) / ARITY;
+            int parent = heap[parentSlot];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[slot] = parent;
+            position[parent] = slot;
+            slot = parentSlot;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+
+    private void siftDown(int slot, int node) {
+        long key = keys[node];
+        while (true) {
+            int firstChild = slot * ARITY + 1;
+            if (firstChild >= size) {
+                break;
+            }
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int minChildSlot = firstChild;
+            long minChildKey = keys[heap[firstChild]];
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                long childKey = keys[heap[child]];
+                if (childKey < minChildKey) {
+                    minChildSlot = child;
+                    minChildKey = childKey;
+                }
+            }
+            if (key <= minChildKey) {
+                break;
+            }
+            int minChild = heap[minChildSlot];
+            heap[slot] = minChild;
+            position[minChild] = slot;
+            slot = minChildSlot;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+// ALT lower bounds (A*, landmarks, triangle inequality). For every landmark L
+// the exact distances d(L, v) to all nodes are precomputed with Dijkstra. As
+// the street graph is undirected, the triangle inequality gives
+// d(v, t) >= |d(L, t) - d(L, v)|, and the maximum over all landmarks is a
+// consistent heuristic that needs no coordinates.
+final class LandmarkHeuristic implements Heuristic {
+
+    static final int DEFAULT_LANDMARK_COUNT = 16;
+
+    // Distance tables do not store INFINITY, a node a landmark cannot reach gets UNREACHABLE.
+    private static final int UNREACHABLE = -1;
+
+    private final int[] landmarks;
+    // distances[i] is the table of landmarks[i], indexed by node
+    private final int[][] distances;
+
+    private LandmarkHeuristic(int[] landmarks, int[][] distances) {
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    // Picks the landmarks one after another, each as far as possible from the
+    // ones picked so far ("farthest" selection). Nodes no landmark reaches count
+    // as infinitely far away, so every connected component gets a landmark.
+    static LandmarkHeuristic select(RoutingGraph graph, int landmarkCount) {
+        int count = Math.min(landmarkCount, graph.nodeCount);
+        int[] landmarks = new int[count];
+        int[][] distances = new int[count][];
+        long[] closest = new long[graph.nodeCount];
+        Arrays.fill(closest, DijkstraEngine.INFINITY);
+
+        DijkstraEngine engine = new DijkstraEngine(graph);
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            landmarks[i] = next;
+            engine.run(next);
+            int[] table = new int[graph.nodeCount];
+            int farthest = next;
+            for (int node = 0; node < graph.nodeCount; node++) {
+                long distance = engine.distance(node);
+                if (distance == DijkstraEngine.INFINITY) {
+                    table[node] = UNREACHABLE;
+                } else {
+                    // Clamping keeps a lower bound, it only weakens it for huge distances.
+                    table[node] = (int) Math.min(distance, Integer.MAX_VALUE);
+                    closest[node] = Math.min(closest[node], distance);
+                }
+                if (closest[node] > closest[farthest]) {
+                    farthest = node;
+                }
+            }
+            distances[i] = table;
+            next = farthest;
+        }
+        return new LandmarkHeuristic(landmarks, distances);
+    }
+
+    // Tables for graph, which differs from the graph this was built for only in
+    // the street lengths of updates. The bound only needs |D(u) - D(v)| <= length
+    // for every street (summing it along a path gives the triangle inequality),
+    // so a longer street leaves a table valid, just looser. A shorter street can
+    // break it: the larger end is lowered and the decrease is propagated like in
+    // Dijkstra, which only touches nodes whose distance actually drops. Tables
+    // that need no change are shared with this.
+    LandmarkHeuristic repair(RoutingGraph graph, StreetUpdates updates) {
+        int[][] repaired = distances.clone();
+        IndexedMinHeap heap = null;
+        for (int i = 0; i < repaired.length; i++) {
+            int[] table = repaired[i];
+            for (int update = 0; update < updates.size(); update++) {
+                int a = updates.from(update);
+                int b = updates.to(update);
+                long length = updates.length(update);
+                if (table[a] == UNREACHABLE || table[b] == UNREACHABLE) {
+                    continue;
+                }
+                int higher = table[a] > table[b] ? a : b;
+                int lower = higher == a ? b : a;
+                if (table[higher] > table[lower] + length) {
+                    if (table == distances[i]) {
+                        table = table.clone();
+                        repaired[i] = table;
+                    }
+                    if (heap == null) {
+                        heap = new IndexedMinHeap(graph.nodeCount);
+                    }
+                    table[higher] = (int) (table[lower] + length);
+                    heap.insertOrDecrease(higher, table[higher]);
+                }
+            }
+            while (heap != null && !heap.isEmpty()) {
+                int current = heap.removeMin();
+                for (int edge = graph.offsets[current]; edge < graph.offsets[current + 1]; edge++) {
+                    int neighbor = graph.targets[edge];
+                    long viaCurrent = (long) table[current] + graph.weights[edge];
+                    if (viaCurrent < table[neighbor]) {
+                        table[neighbor] = (int) viaCurrent;
+                        heap.insertOrDecrease(neighbor, viaCurrent);
+                    }
+                }
+            }
+        }
+        return new LandmarkHeuristic(landmarks, repaired);
+    }
+
+    int[] landmarks() {
+        return landmarks.clone();
+    }
+
+    @Override
+    public long estimate(int node, int target) {
+        long best = 0;
+        for (int[] table : distances) {
+            int toNode = table[node];
+            int toTarget = table[target];
+            if (toNode == UNREACHABLE || toTarget == UNREACHABLE) {
+                continue;
+            }
+            long bound = Math.abs((long) toTarget - toNode);
+            if (bound > best) {
+                best = bound;
+            }
+        }
+        return best;
+    }
+}
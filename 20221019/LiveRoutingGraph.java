@@ -0,0 +1,83 @@
+// A RoutingGraph whose street lengths change while it is being queried, e.g.
+// by live traffic. Every batch of StreetUpdates produces a new immutable
+// Snapshot: the weights are copied once per batch (copy-on-write), the
+// topology is shared, and landmark tables and hierarchy are repaired for the
+// new lengths instead of being rebuilt. A query takes one snapshot and uses
+// only its parts, so it never sees a half applied batch or a hierarchy that
+// belongs to other lengths than its graph.
+final class LiveRoutingGraph {
+
+    static final class Snapshot {
+
+        // Increases with every applied batch, starting at 0.
+        final long version;
+        final RoutingGraph graph;
+        // null unless the LiveRoutingGraph was created with them
+        final LandmarkHeuristic landmarks;
+        final ContractionHierarchy hierarchy;
+
+        private Snapshot(long version, RoutingGraph graph, LandmarkHeuristic landmarks,
+                         ContractionHierarchy hierarchy) {
+            this.version = version;
+            this.graph = graph;
+            this.landmarks = landmarks;
+            this.hierarchy = hierarchy;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" + "version=" + version + ", graph=" + graph + '}';
+        }
+    }
+
+    private volatile Snapshot current;
+
+    // landmarks and hierarchy may be null, they have to belong to graph otherwise.
+    LiveRoutingGraph(RoutingGraph graph, LandmarkHeuristic landmarks, ContractionHierarchy hierarchy) {
+        current = new Snapshot(0, graph, landmarks, hierarchy);
+    }
+
+    Snapshot snapshot() {
+        return current;
+    }
+
+    // Applies all updates or, if one of them names nodes without a street
+    // between them, none. Batches are applied one at a time; queries keep
+    // running on the previous snapshot meanwhile.
+    synchronized Snapshot apply(StreetUpdates updates) {
+        Snapshot previous = current;
+        RoutingGraph graph = previous.graph;
+        int[] weights = graph.weights.clone();
+        boolean lengthsIncreased = false;
+        for (int update = 0; update < updates.size(); update++) {
+            int from = updates.from(update);
+            int to = updates.to(update);
+            int length = updates.length(update);
+            if (from < 0 || from >= graph.nodeCount || to < 0 || to >= graph.nodeCount
+                    || graph.edgeLength(from, to) == -1) {
+                throw new IllegalArgumentException("No street between " + from + " and " + to);
+            }
+            lengthsIncreased |= setLength(graph, weights, from, to, length);
+            lengthsIncreased |= setLength(graph, weights, to, from, length);
+        }
+        RoutingGraph updated = graph.withWeights(weights);
+        LandmarkHeuristic landmarks = previous.landmarks == null
+                ? null : previous.landmarks.repair(updated, updates);
+        ContractionHierarchy hierarchy = previous.hierarchy == null
+                ? null : previous.hierarchy.repair(updated, updates, lengthsIncreased);
+        current = new Snapshot(previous.version + 1, updated, landmarks, hierarchy);
+        return current;
+    }
+
+    // Returns whether an edge got longer.
+    private static boolean setLength(RoutingGraph graph, int[] weights, int from, int to, int length) {
+        boolean increased = false;
+        for (int edge = graph.offsets[from]; edge < graph.offsets[from + 1]; edge++) {
+            if (graph.targets[edge] == to) {
+                increased |= length > weights[edge];
+                weights[edge] = length;
+            }
+        }
+        return increased;
+    }
+}
@@ -0,0 +1,85 @@
+import java.nio.IntBuffer;
+
+// CSR street graph read straight from a memory-mapped RegionSnapshot: the
+// offsets, targets and weights are int views of the read-only mapping, so
+// the edges stay off the heap and the page cache holds them once for every
+// process that maps the same file. Loading costs no copying, only the pages
+// a search touches are read from disk. Created by RegionSnapshot.read.
+final class MappedRoutingGraph implements AdjacencyGraph {
+
+    private final int nodeCount;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+
+    MappedRoutingGraph(IntBuffer offsets, IntBuffer targets, IntBuffer weights) {
+        if (offsets.limit() == 0 || targets.limit() != weights.limit()
+                || offsets.get(offsets.limit() - 1) != targets.limit()) {
+            throw new IllegalArgumentException("Inconsistent CSR buffers");
+        }
+        nodeCount = offsets.limit() - 1;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    // The same graph as CSR arrays on the heap, copied in bulk from the mapping.
+    RoutingGraph toRoutingGraph() {
+        int[] offsetArray = new int[offsets.limit()];
+        int[] targetArray = new int[targets.limit()];
+        int[] weightArray = new int[weights.limit()];
+        offsets.get(0, offsetArray);
+        targets.get(0, targetArray);
+        weights.get(0, weightArray);
+        return RoutingGraph.of(offsetArray, targetArray, weightArray);
+    }
+
+    int edgeCount() {
+        return targets.limit();
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new Cursor() {
+            private int edge;
+            private int end;
+
+            @Override
+            public void moveTo(int node) {
+                edge = offsets.get(node) - 1;
+                end = offsets.get(node + 1);
+            }
+
+            @Override
+            public boolean next() {
+                return ++edge < end;
+            }
+
+            @Override
+            public int target() {
+                return targets.get(edge);
+            }
+
+            @Override
+            public int weight() {
+                return weights.get(edge);
+            }
+        };
+    }
+
+    // Size of the mapped sections, none of it is on the heap.
+    @Override
+    public long memoryBytes() {
+        return (long) Integer.BYTES * (offsets.limit() + targets.limit() + weights.limit());
+    }
+
+    @Override
+    public String toString() {
+        return "MappedRoutingGraph{" + "nodes=" + nodeCount + ", edges=" + edgeCount() + '}';
+    }
+}
@@ -0,0 +1,25 @@
+// Priority queue of nodes with integer keys for a search that never adds a key
+// below the last removed one, as Dijkstra with non-negative street lengths.
+// A node may be added again with a smaller key instead of a decrease-key; the
+// older entries stay in the queue and are removed later as stale entries.
+interface MonotoneQueue {
+
+    // key must not be smaller than lastKey().
+    void add(int node, long key);
+
+    boolean isEmpty();
+
+    // Removes an entry with the minimum key and returns its node.
+    int removeMin();
+
+    // Key of the entry removed last, 0 after clear().
+    long lastKey();
+
+    void clear();
+
+    // The queue for a search on graph: Dial's buckets if the longest street is
+    // short enough for one bucket per possible key offset, a radix heap otherwise.
+    static MonotoneQueue forGraph(RoutingGraph graph) {
+        return graph.maxWeight <= DialQueue.MAX_WEIGHT ? new DialQueue(graph.maxWeight) : new RadixHeap();
+    }
+}
@@ -1,102 +1,354 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class Navigation {
 
     public static void main(String[] args) {
-        new Navigation().go();
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            // unknown algorithm, -Dnavigation.order or -Dnavigation.graph, or hilbert without coordinates
+            System.out.println("ERROR");
+            System.err.println(e.getMessage());
+            return;
+        }
+        // only with -Dnavigation.metrics=true
+        QueryMetrics.report();
+    }
+
+    private static void run(String[] args) {
+        if (args.length == 2 && "batch".equals(args[0])) {
+            // "batch queries.txt" answers one "from to" query per line, in that order
+            new Navigation().goBatch(args[1]);
+        } else if ((args.length == 3 || args.length == 4) && "matrix".equals(args[0])) {
+            // "matrix depots.txt stops.txt [dijkstra|contraction-hierarchy]": every depot to every stop
+            RoutingAlgorithm algorithm = args.length == 4 ? RoutingAlgorithm.byName(args[3]) : RoutingAlgorithm.DIJKSTRA;
+            new Navigation().goMatrix(args[1], args[2], algorithm);
+        } else if (args.length >= 3 && "isochrone".equals(args[0])) {
+            // "isochrone n0 500 [file]": every city within 500 of n0 with distance and predecessor
+            long budget;
+            try {
+                budget = Long.parseLong(args[2]);
+            } catch (NumberFormatException e) {
+                // not a number
+                System.out.println("ERROR");
+                return;
+            }
+            new Navigation().goIsochrone(args[1], budget, args.length > 3 ? args[3] : null);
+        } else {
+            // optional first argument: the RoutingAlgorithm, e.g. "bidirectional"
+            RoutingAlgorithm algorithm = args.length > 0 ? RoutingAlgorithm.byName(args[0]) : RoutingAlgorithm.ASTAR;
+            new Navigation().go(algorithm);
+        }
     }
 
-    private void go() {
+    private void go(RoutingAlgorithm algorithm) {
+        long parse = QueryMetrics.startPhase();
         Region region = readInput();
+        QueryMetrics.endPhase(QueryMetrics.PARSE, parse);
         if (region == null) {
             // Region not present
             System.out.println("ERROR");
         } else {
             // We know the region
-            System.out.println(solvingMethod("n0", "n1", region));
+            long build = QueryMetrics.startPhase();
+            RoutingGraph graph = buildRoutingGraph(region);
+            NodeOrder order = nodeOrder(region, graph);
+            if (order != null) {
+                graph = order.apply(graph);
+            }
+            RoutingEngine engine = algorithm.create(graph, buildHeuristic(region, graph, order));
+            // the engine keeps what it searches, e.g. only the packed edges for compressed
+            graph = null;
+            QueryMetrics.endPhase(QueryMetrics.BUILD, build);
+            System.out.println(solvingMethod("n0", "n1", region, engine, order));
         }
     }
 
-    private List<City> solvingMethod(String start, String end, Region region) {
-        // determine s1 and s2
-        City s1 = null;
-        City s2 = null;
-        for (City city : region.cities) {
-            if (start.equals(city.name)) {
-                s1 = city;
-            } else if (end.equals(city.name)) {
-                s2 = city;
+    // Batches are meant for large regions, so the region is read with the streaming
+    // RegionParser and never turned into City and Street objects. The parsed region
+    // is kept as a binary snapshot next to the input file for the next start.
+    private void goBatch(String queryFile) {
+        RoutingRegion region;
+        long parse = QueryMetrics.startPhase();
+        try {
+            region = loadRegion();
+            QueryMetrics.endPhase(QueryMetrics.PARSE, parse);
+        } catch (IOException e) {
+            System.out.println("ERROR");
+            return;
+        }
+        List<int[]> queries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(queryFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] split = line.trim().split(" ");
+                int from = region.cityId(split[0]);
+                int to = region.cityId(split[1]);
+                if (from == RoutingRegion.UNKNOWN_CITY || to == RoutingRegion.UNKNOWN_CITY) {
+                    // unknown city
+                    System.out.println("ERROR");
+                    return;
+                }
+                queries.add(new int[] {from, to});
             }
+        } catch (IOException e) {
+            System.out.println("ERROR");
+            return;
         }
-        // initialize d
-        Map<City, Integer> d = new HashMap<>();
-        for (City city : region.cities) {
-            d.put(city, Integer.MAX_VALUE);
-        }
-        d.put(s1, 0);
-        Map<City, City> predecessor = new HashMap<>();
-        predecessor.put(s1, s1);
-        // Queue to sort the cities by distance
-        Queue<RoutingEntry> queue = new PriorityQueue<>(region.cities.size(), Comparator.comparingInt(r -> r.distance));
-        queue.add(new RoutingEntry(s1, 0));
-        Set<City> visited = new HashSet<>();
-        // Build a map that stores the neighbors and distances to them for each city.
-        Map<City, List<RoutingEntry>> neighbors = new HashMap<>();
-        for (Street street : region.streets) {
-            if (!neighbors.containsKey(street.from)) {
-                neighbors.put(street.from, new ArrayList<>());
+        int[] sources = new int[queries.size()];
+        int[] targets = new int[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            sources[i] = queries.get(i)[0];
+            targets[i] = queries.get(i)[1];
+        }
+        // The graph is shared by all worker threads, the searches per source are grouped.
+        long search = QueryMetrics.startPhase();
+        int[][] paths = new BatchRouter(region.graph).route(sources, targets);
+        QueryMetrics.endPhase(QueryMetrics.SEARCH, search);
+        long extract = QueryMetrics.startPhase();
+        StringBuilder output = new StringBuilder();
+        for (int[] path : paths) {
+            output.append(region.describePath(path)).append('\n');
+        }
+        QueryMetrics.endPhase(QueryMetrics.EXTRACT, extract);
+        System.out.print(output);
+    }
+
+    // Prints one line per city of sourceFile with the distances to the cities of
+    // targetFile, separated by spaces, "-" if unreachable. Both files list city
+    // names separated by white space. The searches per source, or with a
+    // hierarchy the buckets of the many-to-many algorithm, run on the common pool.
+    private void goMatrix(String sourceFile, String targetFile, RoutingAlgorithm algorithm) {
+        if (algorithm != RoutingAlgorithm.DIJKSTRA && algorithm != RoutingAlgorithm.CONTRACTION_HIERARCHY) {
+            throw new IllegalArgumentException("A matrix is computed with dijkstra or contraction-hierarchy");
+        }
+        RoutingRegion region;
+        long parse = QueryMetrics.startPhase();
+        int[] sources;
+        int[] targets;
+        try {
+            region = loadRegion();
+            sources = readCityIds(sourceFile, region);
+            targets = readCityIds(targetFile, region);
+            QueryMetrics.endPhase(QueryMetrics.PARSE, parse);
+        } catch (IOException e) {
+            System.out.println("ERROR");
+            return;
+        }
+        if (sources == null || targets == null) {
+            // unknown city
+            System.out.println("ERROR");
+            return;
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        DistanceMatrix matrix;
+        if (algorithm == RoutingAlgorithm.CONTRACTION_HIERARCHY) {
+            long build = QueryMetrics.startPhase();
+            ContractionHierarchy contracted = ContractionHierarchy.build(region.routingGraph());
+            QueryMetrics.endPhase(QueryMetrics.BUILD, build);
+            long search = QueryMetrics.startPhase();
+            matrix = DistanceMatrix.compute(contracted, sources, targets, pool);
+            QueryMetrics.endPhase(QueryMetrics.SEARCH, search);
+        } else {
+            long search = QueryMetrics.startPhase();
+            matrix = DistanceMatrix.compute(region.graph, sources, targets, pool);
+            QueryMetrics.endPhase(QueryMetrics.SEARCH, search);
+        }
+        long extract = QueryMetrics.startPhase();
+        StringBuilder output = new StringBuilder();
+        for (int row = 0; row < matrix.rows; row++) {
+            for (int column = 0; column < matrix.columns; column++) {
+                if (column > 0) {
+                    output.append(' ');
+                }
+                long distance = matrix.get(row, column);
+                if (distance == DistanceMatrix.INFINITY) {
+                    output.append('-');
+                } else {
+                    output.append(distance);
+                }
             }
-            if (!neighbors.containsKey(street.to)) {
-                neighbors.put(street.to, new ArrayList<>());
+            output.append('\n');
+        }
+        QueryMetrics.endPhase(QueryMetrics.EXTRACT, extract);
+        System.out.print(output);
+    }
+
+    // Ids of the city names in file, null if one of them is unknown.
+    private int[] readCityIds(String file, RoutingRegion region) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                for (String name : line.trim().split("\\s+")) {
+                    if (!name.isEmpty()) {
+                        names.add(name);
+                    }
+                }
             }
-            // Streets a bidirectional
-            neighbors.get(street.from).add(new RoutingEntry(street.to, street.length));
-            neighbors.get(street.to).add(new RoutingEntry(street.from, street.length));
-        }
-        // Dijkstra's algorithm
-        while (!queue.isEmpty()) {
-            s1 = queue.remove().city;
-            if (visited.contains(s1)) {
-                continue;
+        }
+        int[] ids = new int[names.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = region.cityId(names.get(i));
+            if (ids[i] == RoutingRegion.UNKNOWN_CITY) {
+                return null;
             }
-            visited.add(s1);
-            for (RoutingEntry neighbor : neighbors.get(s1)) {
-                if (d.get(s1) + neighbor.distance < d.get(neighbor.city)) {
-                    d.put(neighbor.city, d.get(s1) + neighbor.distance);
-                    predecessor.put(neighbor.city, s1);
-                    queue.add(new RoutingEntry(neighbor.city, d.get(neighbor.city)));
-                }
+        }
+        return ids;
+    }
+
+    // Writes "city distance predecessor" for every city within budget of start,
+    // nearest first, to the file or stdout. Like batches, this works on the
+    // RoutingRegion and never creates City objects.
+    private void goIsochrone(String start, long budget, String file) {
+        RoutingRegion region;
+        long parse = QueryMetrics.startPhase();
+        try {
+            region = loadRegion();
+            QueryMetrics.endPhase(QueryMetrics.PARSE, parse);
+        } catch (IOException e) {
+            System.out.println("ERROR");
+            return;
+        }
+        int source = region.cityId(start);
+        if (source == RoutingRegion.UNKNOWN_CITY || budget < 0) {
+            System.out.println("ERROR");
+            return;
+        }
+        long search = QueryMetrics.startPhase();
+        ShortestPathTree tree = ShortestPathTree.compute(new DijkstraEngine(region.graph), source, budget);
+        QueryMetrics.endPhase(QueryMetrics.SEARCH, search);
+        long extract = QueryMetrics.startPhase();
+        try {
+            if (file == null) {
+                tree.write(region.names, System.out);
+            } else {
+                tree.write(region.names, Path.of(file));
             }
+        } catch (IOException e) {
+            System.out.println("ERROR");
         }
+        QueryMetrics.endPhase(QueryMetrics.EXTRACT, extract);
+    }
+
+    // order is null if the engine works on the city ids themselves.
+    private List<City> solvingMethod(String start, String end, Region region, RoutingEngine engine,
+                                     NodeOrder order) {
+        long search = QueryMetrics.startPhase();
+        int[] path = search(start, end, region, engine, order);
+        QueryMetrics.endPhase(QueryMetrics.SEARCH, search);
+        long extract = QueryMetrics.startPhase();
+        List<City> result = extract(path, region);
+        QueryMetrics.endPhase(QueryMetrics.EXTRACT, extract);
+        return result;
+    }
+
+    // City ids of a shortest path from start to end. Package-private for the JMH benchmarks.
+    int[] search(String start, String end, Region region, RoutingEngine engine, NodeOrder order) {
+        // determine s1 and s2
+        City s1 = region.registry.get(start);
+        City s2 = region.registry.get(end);
+        // Dijkstra's algorithm or one of its variants, they all stop once s2 is settled
+        return order == null ? engine.route(s1.id, s2.id)
+                : order.toOld(engine.route(order.newId(s1.id), order.newId(s2.id)));
+    }
+
+    List<City> extract(int[] path, Region region) {
         List<City> result = new ArrayList<>();
-        City last = s2; // last is the last city ...
-        result.add(last); // ... and the first in the result
-        while (!last.equals(predecessor.get(last))) {
-            last = predecessor.get(last);
-            result.add(last);
+        for (int city : path) {
+            result.add(region.registry.get(city));
         }
-        Collections.reverse(result);
         return result;
     }
 
+    // Build the street network once, the solver only works on the dense city ids.
+    RoutingGraph buildRoutingGraph(Region region) {
+        RoutingGraph.Builder builder = new RoutingGraph.Builder(region.registry.size());
+        for (Street street : region.streets) {
+            builder.addStreet(street.from.id, street.to.id, street.length);
+        }
+        return builder.build();
+    }
+
+    // A* needs coordinates for every city, otherwise we fall back to Dijkstra.
+    private Heuristic buildHeuristic(Region region, RoutingGraph graph, NodeOrder order) {
+        double[] x = coordinates(region, true);
+        double[] y = coordinates(region, false);
+        if (x == null) {
+            return null;
+        }
+        return new EuclideanHeuristic(graph, order == null ? x : order.apply(x), order == null ? y : order.apply(y));
+    }
+
+    // x or y of every city by id, null if a city has no coordinates.
+    private double[] coordinates(Region region, boolean x) {
+        double[] values = new double[region.registry.size()];
+        for (City city : region.registry.cities()) {
+            if (!city.hasCoordinates) {
+                return null;
+            }
+            values[city.id] = x ? city.x : city.y;
+        }
+        return values;
+    }
+
+    // -Dnavigation.order=bfs|rcm|hilbert renumbers the cities for cache locality
+    // (see NodeOrder), null without it. hilbert needs coordinates.
+    private NodeOrder nodeOrder(Region region, RoutingGraph graph) {
+        String name = System.getProperty("navigation.order");
+        return name == null ? null : NodeOrder.byName(name, graph, coordinates(region, true), coordinates(region, false));
+    }
+
+    // The RoutingRegion renumbered by -Dnavigation.order, unchanged without it.
+    // A renumbered graph is on the heap, not in the mapped snapshot.
+    private static RoutingRegion reordered(RoutingRegion region) {
+        String name = System.getProperty("navigation.order");
+        if (name == null) {
+            return region;
+        }
+        RoutingRegion onHeap = region.onHeap();
+        return onHeap.reordered(NodeOrder.byName(name, onHeap.routingGraph(), onHeap.x, onHeap.y));
+    }
+
+    // The input file (see inputFile) through its binary snapshot, e.g.
+    // input.3.rgn next to input.txt, with the graph kept as -Dnavigation.graph
+    // says and renumbered by -Dnavigation.order. RoutingServer loads the same way.
+    static RoutingRegion loadRegion() throws IOException {
+        return reordered(RegionSnapshot.loadOrParse(Path.of(inputFile()), graphStorage()));
+    }
+
+    // -Dnavigation.graph=mapped|heap|compressed|off-heap, mapped by default (see GraphStorage).
+    private static GraphStorage graphStorage() {
+        return GraphStorage.byName(System.getProperty("navigation.graph", "mapped"));
+    }
+
+    // input.txt, unless overridden with -Dnavigation.input=...
+    private static String inputFile() {
+        return System.getProperty("navigation.input", "input.txt");
+    }
+
     private Region readInput() {
-        Map<String, City> cities = new HashMap<>();
+        return readInput(inputFile());
+    }
+
+    // null if the file cannot be read.
+    Region readInput(String inputFile) {
+        CityRegistry<City> cities = new CityRegistry<>();
         Set<Street> streets = new HashSet<>();
         boolean readCities = false; // whether we should not already parse the streets
-        try (BufferedReader br = new BufferedReader(new FileReader("input.txt"))) {
+        try (BufferedReader br = new BufferedReader(new FileReader(inputFile))) {
             String line;
             while ((line = br.readLine()) != null) {
                 if (line.startsWith("cities")) {
@@ -110,7 +362,14 @@ public class Navigation {
                 }
 
                 if (readCities) {
-                    cities.put(line.trim(), new City(line.trim()));
+                    // a city is either "name" or "name x y"
+                    String[] split = line.trim().split(" ");
+                    City city = cities.register(split[0], id -> new City(split[0], id));
+                    if (split.length >= 3) {
+                        city.x = Double.parseDouble(split[1]);
+                        city.y = Double.parseDouble(split[2]);
+                        city.hasCoordinates = true;
+                    }
                 } else {
                     String[] split = line.trim().split(" ");
                     City from = cities.get(split[0]);
@@ -123,7 +382,7 @@ public class Navigation {
                 }
             }
 
-            return new Region(new HashSet<>(cities.values()), streets);
+            return new Region(cities, streets);
             // TODO consider using this:
             // return new Region(new TreeSet<>(cities.values()), streets);
         } catch (IOException e) {
@@ -131,28 +390,30 @@ public class Navigation {
         }
     }
 
-    private static class City {
+    static class City {
 
         String name;
+        int id; // dense id from the CityRegistry, also the node in the RoutingGraph
+        double x;
+        double y;
+        boolean hasCoordinates;
         List<City> neighbors;
 
-        private City(String name) {
+        private City(String name, int id) {
             this.name = name;
+            this.id = id;
             neighbors = new ArrayList<>();
         }
 
+        // The registry creates exactly one City per name, so identity is equality and
+        // no lookup has to compare neighbor lists.
         @Override
         public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (!(o instanceof City)) {
-                return false;
-            }
-            City city = (City) o;
-            return Objects.equals(name, city.name) && Objects.equals(neighbors, city.neighbors);
+            return this == o;
         }
 
+        // String caches its hash, and hashing by name keeps the iteration order of the
+        // street set, and thus ties between equally long routes, as it was.
         @Override
         public int hashCode() {
             return name.hashCode();
@@ -201,14 +462,16 @@ public class Navigation {
         }
     }
 
-    private static class Region {
+    static class Region {
 
         Set<City> cities;
         Set<Street> streets;
+        CityRegistry<City> registry;
 
-        private Region(Set<City> cities, Set<Street> streets) {
-            this.cities = cities;
+        private Region(CityRegistry<City> registry, Set<Street> streets) {
+            this.cities = new HashSet<>(registry.cities());
             this.streets = streets;
+            this.registry = registry;
         }
 
         @Override
@@ -233,15 +496,4 @@ public class Navigation {
             return "Region{" + "cities=" + cities + ", streets=" + streets + '}';
         }
     }
-
-    private static class RoutingEntry {
-
-        City city;
-        int distance;
-
-        private RoutingEntry(City city, int distance) {
-            this.city = city;
-            this.distance = distance;
-        }
-    }
 }
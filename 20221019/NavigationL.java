@@ -2,26 +2,24 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
 public class NavigationL {
 
   public static void main(String[] args) {
     new NavigationL().computeNavigation();
+    // NOTE: only writes anything with -Dnavigation.metrics=true
+    QueryMetrics.report();
   }
 
   private void computeNavigation() {
     try {
+      long parse = QueryMetrics.startPhase();
       Region region = readRegionFromFile();
+      QueryMetrics.endPhase(QueryMetrics.PARSE, parse);
       City startCity = getCityByName("n0", region);
       City targetCity = getCityByName("n1", region);
 
@@ -29,7 +27,10 @@ public class NavigationL {
       // this method.
       // It now only has to deal with "fully parsed" input (i.e. resolved to Java
       // objects)
-      List<City> shortestPath = computeShortestPathBetweenCities(startCity, targetCity, region);
+      long build = QueryMetrics.startPhase();
+      DijkstraEngine engine = new DijkstraEngine(buildRoutingGraph(region));
+      QueryMetrics.endPhase(QueryMetrics.BUILD, build);
+      List<City> shortestPath = computeShortestPathBetweenCities(startCity, targetCity, region, engine);
 
       System.out.println(shortestPath);
     } catch (IOException e) {
@@ -41,99 +42,62 @@ public class NavigationL {
     // NOTE: By making this method more general (finding the city for any name
     // instead of only
     // start, end) we also simplify it.
-    for (City city : region.cities) {
-      if (cityName.equals(city.name)) {
-        return city;
-      }
-    }
-    return null;
+    // The registry looks the name up in O(1) instead of scanning all cities.
+    return region.registry.get(cityName);
   }
 
-  private List<City> computeShortestPathBetweenCities(City start, City target, Region region) {
-    Map<City, List<RoutingEntry>> neighborDistances = computeNeighborDistances(region);
-    Map<City, City> predecessorsOnShortestPath = computePredecessorsOnShortestPath(start, neighborDistances);
-    return extractPathFromPredecessorMap(predecessorsOnShortestPath, target);
+  private List<City> computeShortestPathBetweenCities(City start, City target, Region region,
+      DijkstraEngine engine) {
+    long search = QueryMetrics.startPhase();
+    int[] cityIdsOnShortestPath = computeCityIdsOnShortestPath(start.id, target.id, engine);
+    QueryMetrics.endPhase(QueryMetrics.SEARCH, search);
+    long extract = QueryMetrics.startPhase();
+    List<City> path = extractCitiesFromIds(cityIdsOnShortestPath, region);
+    QueryMetrics.endPhase(QueryMetrics.EXTRACT, extract);
+    return path;
   }
 
-  private List<City> extractPathFromPredecessorMap(Map<City, City> predecessors, City target) {
+  // NOTE: This and the other package-private phases are called by the JMH
+  // benchmarks (see NavigationLPhases).
+  List<City> extractCitiesFromIds(int[] cityIds, Region region) {
     List<City> extractedPath = new ArrayList<>();
-    City currentCity = target;
-    extractedPath.add(currentCity);
-    // The root in the predecessors map has itself as predecessor.
-    while (!currentCity.equals(predecessors.get(currentCity))) {
-      currentCity = predecessors.get(currentCity);
-      extractedPath.add(currentCity);
+    // The path is empty if the target is not reachable from the start.
+    for (int city : cityIds) {
+      extractedPath.add(region.registry.get(city));
     }
-    Collections.reverse(extractedPath);
 
     return extractedPath;
   }
 
-  private Map<City, List<RoutingEntry>> computeNeighborDistances(Region region) {
-    Map<City, List<RoutingEntry>> neighbors = new HashMap<>();
-    // First we add all the cities to the map
-    for (City city : region.cities) {
-      neighbors.put(city, new ArrayList<>());
-    }
-
-    // Then we add neighbors according to the edges
+  // NOTE: The graph is built once per region and only knows dense city ids, so the
+  // search below never has to hash a City.
+  RoutingGraph buildRoutingGraph(Region region) {
+    RoutingGraph.Builder builder = new RoutingGraph.Builder(region.registry.size());
     for (Street street : region.streets) {
-      // Streets are bidirectional, thus we add the entry to both ends of the street.
-      neighbors.get(street.from).add(new RoutingEntry(street.to, street.length));
-      neighbors.get(street.to).add(new RoutingEntry(street.from, street.length));
+      // Streets are bidirectional, the builder adds the entry to both ends of the street.
+      builder.addStreet(street.from.id, street.to.id, street.length);
     }
 
-    return neighbors;
+    return builder.build();
   }
 
   // NOTE: Here we have a better separation of abstractions, because this method
   // deals with graphs
   // while the calling method considers regions and doesn't really know anything
   // about graphs.
-  private Map<City, City> computePredecessorsOnShortestPath(
-      City start, Map<City, List<RoutingEntry>> adjacencyLists) {
-    Map<City, Integer> distances = getInfiniteDistanceMap(adjacencyLists.keySet());
-    distances.put(start, 0);
-
-    Map<City, City> predecessors = new HashMap<>();
-    predecessors.put(start, start);
-
-    Queue<RoutingEntry> minDistanceCities = new PriorityQueue<>(adjacencyLists.size(),
-        Comparator.comparingInt(r -> r.distance));
-    minDistanceCities.add(new RoutingEntry(start, 0));
-    Set<City> visitedCities = new HashSet<>();
-
+  // The engine reuses its distance/predecessor arrays and indexed heap between queries.
+  // NOTE: The search stops once the target is settled, so only the predecessors on
+  // the path to the target are final; they are walked right away.
+  private int[] computeCityIdsOnShortestPath(int start, int target, DijkstraEngine engine) {
     // Dijkstra's algorithm
-    while (!minDistanceCities.isEmpty()) {
-      City current = minDistanceCities.remove().city;
-      if (visitedCities.contains(current)) {
-        continue;
-      }
-      visitedCities.add(current);
-      for (RoutingEntry neighbor : adjacencyLists.get(current)) {
-        // NOTE: We extract variables to make it easier to understand the if-condition.
-        int fromCurrentToNeighbor = distances.get(current) + neighbor.distance;
-        int shortestDistanceToNeighbor = distances.get(neighbor.city);
-
-        if (fromCurrentToNeighbor < shortestDistanceToNeighbor) {
-          distances.put(neighbor.city, fromCurrentToNeighbor);
-          predecessors.put(neighbor.city, current);
-          minDistanceCities.add(new RoutingEntry(neighbor.city, fromCurrentToNeighbor));
-        }
-      }
-    }
+    engine.run(start, target);
 
-    return predecessors;
+    return engine.path(target);
   }
 
-  private static <T> Map<T, Integer> getInfiniteDistanceMap(Set<T> nodes) {
-    final int infinity = Integer.MAX_VALUE;
-    Map<T, Integer> distances = new HashMap<>();
-    for (T node : nodes) {
-      distances.put(node, infinity);
-    }
-
-    return distances;
+  int[] computeCityIdsOnShortestPath(String start, String target, Region region, DijkstraEngine engine) {
+    return computeCityIdsOnShortestPath(getCityByName(start, region).id, getCityByName(target, region).id,
+        engine);
   }
 
   // NOTE this method is likely best refactored by moving it into a separate
@@ -143,11 +107,16 @@ public class NavigationL {
   // streets to that method. It would be better to have them as fields in an
   // InputReader class.
   private Region readRegionFromFile() throws IOException {
-    Map<String, City> cities = new HashMap<>();
+    // NOTE: -Dnavigation.input=... reads another file.
+    return readRegionFromFile(System.getProperty("navigation.input", "input.txt"));
+  }
+
+  Region readRegionFromFile(String inputFile) throws IOException {
+    CityRegistry<City> cities = new CityRegistry<>();
     Set<Street> streets = new HashSet<>();
     boolean expectCityEntries = false;
     boolean expectStreetEntries = false;
-    try (BufferedReader br = new BufferedReader(new FileReader("input.txt"))) {
+    try (BufferedReader br = new BufferedReader(new FileReader(inputFile))) {
       String line;
       while ((line = br.readLine()) != null) {
         if (line.startsWith("cities")) {
@@ -157,8 +126,7 @@ public class NavigationL {
           expectCityEntries = false;
           expectStreetEntries = true;
         } else if (expectCityEntries) {
-          City parsedCity = parseCityDescription(line);
-          cities.put(parsedCity.name, parsedCity);
+          parseCityDescription(line, cities);
         } else if (expectStreetEntries) {
           Street parsedStreet = parseStreetDescription(line, cities);
           streets.add(parsedStreet);
@@ -167,15 +135,16 @@ public class NavigationL {
         // an exception
       }
 
-      return new Region(new HashSet<>(cities.values()), streets);
+      return new Region(cities, streets);
     }
   }
 
-  private City parseCityDescription(String description) {
-    return new City(description.trim());
+  private City parseCityDescription(String description, CityRegistry<City> cities) {
+    String name = description.trim();
+    return cities.register(name, id -> new City(name, id));
   }
 
-  private Street parseStreetDescription(String description, Map<String, City> citiesByName) {
+  private Street parseStreetDescription(String description, CityRegistry<City> citiesByName) {
     String[] split = description.trim().split(" ");
     City from = citiesByName.get(split[0]);
     City to = citiesByName.get(split[1]);
@@ -187,28 +156,27 @@ public class NavigationL {
     return new Street(from, to, streetLength);
   }
 
-  private static class City {
+  static class City {
 
     String name;
+    int id; // dense id from the CityRegistry, also the node in the RoutingGraph
     List<City> neighbors;
 
-    private City(String name) {
+    private City(String name, int id) {
       this.name = name;
+      this.id = id;
       neighbors = new ArrayList<>();
     }
 
+    // NOTE: The registry creates exactly one City per name, so identity is equality
+    // and no lookup has to compare neighbor lists.
     @Override
     public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (!(o instanceof City)) {
-        return false;
-      }
-      City city = (City) o;
-      return Objects.equals(name, city.name) && Objects.equals(neighbors, city.neighbors);
+      return this == o;
     }
 
+    // NOTE: Hashing by name (String caches it) keeps the iteration order of the
+    // street set, and thus ties between equally long paths, unchanged.
     @Override
     public int hashCode() {
       return name.hashCode();
@@ -220,7 +188,7 @@ public class NavigationL {
     }
   }
 
-  private static class Street {
+  static class Street {
 
     City from;
     City to;
@@ -257,14 +225,16 @@ public class NavigationL {
     }
   }
 
-  private static class Region {
+  static class Region {
 
     Set<City> cities;
     Set<Street> streets;
+    CityRegistry<City> registry;
 
-    private Region(Set<City> cities, Set<Street> streets) {
-      this.cities = cities;
+    private Region(CityRegistry<City> registry, Set<Street> streets) {
+      this.cities = new HashSet<>(registry.cities());
       this.streets = streets;
+      this.registry = registry;
     }
 
     @Override
@@ -289,15 +259,4 @@ public class NavigationL {
       return "Region{" + "cities=" + cities + ", streets=" + streets + '}';
     }
   }
-
-  private static class RoutingEntry {
-
-    City city;
-    int distance;
-
-    private RoutingEntry(City city, int distance) {
-      this.city = city;
-      this.distance = distance;
-    }
-  }
 }
@@ -2,28 +2,29 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
 public class NavigationR {
 
     public static void main(String[] args) {
         new NavigationR().init();
+        QueryMetrics.report(); // -Dnavigation.metrics=true
     }
 
     private Region readInput() {
-        Map<String, City> cities = new HashMap<>();
+        // -Dnavigation.input overrides the file
+        return readInput(System.getProperty("navigation.input", "input.txt"));
+    }
+
+    // package-private like BuildRoutingGraph, FindPath and ToCities, for the JMH benchmarks (NavigationRPhases)
+    Region readInput(String inputFile) {
+        CityRegistry<City> cities = new CityRegistry<>();
         Set<Street> streets = new HashSet<>();
         boolean readCities = false; // whether we should not already parse the streets
-        try (BufferedReader br = new BufferedReader(new FileReader("input.txt"))) {
+        try (BufferedReader br = new BufferedReader(new FileReader(inputFile))) {
             String line;
             while ((line = br.readLine()) != null) {
                 if (line.startsWith("cities")) {
@@ -37,7 +38,8 @@ public class NavigationR {
                 }
 
                 if (readCities) {
-                    cities.put(line.trim(), new City(line.trim()));
+                    String name = line.trim();
+                    cities.register(name, id -> new City(name, id));
                 } else {
                     String[] split = line.trim().split(" ");
                     City from = cities.get(split[0]);
@@ -50,7 +52,7 @@ public class NavigationR {
                 }
             }
 
-            return new Region(new HashSet<>(cities.values()), streets);
+            return new Region(cities, streets);
 
         } catch (IOException e) {
             System.out.println("Error reading input file : " + e.getMessage());
@@ -59,104 +61,74 @@ public class NavigationR {
     }
 
     private void init() {
+        long parse = QueryMetrics.startPhase();
         Region region = readInput();
+        QueryMetrics.endPhase(QueryMetrics.PARSE, parse);
         if (region == null)
             return;
 
-        System.out.println(GetFastestRoute("n0", "n1", region));
+        long build = QueryMetrics.startPhase();
+        DijkstraEngine engine = new DijkstraEngine(BuildRoutingGraph(region));
+        QueryMetrics.endPhase(QueryMetrics.BUILD, build);
+        System.out.println(GetFastestRoute("n0", "n1", region, engine));
     }
 
-    private List<City> GetFastestRoute(String start, String end, Region region) {
-        City startCity = null;
-        City endCity = null;
+    RoutingGraph BuildRoutingGraph(Region region) {
+        RoutingGraph.Builder builder = new RoutingGraph.Builder(region.registry.size());
+        // Streets a bidirectional, addStreet stores both directions
+        for (Street street : region.streets)
+            builder.addStreet(street.from.id, street.to.id, street.length);
 
-        for (City city : region.cities) {
-            if (start.equals(city.name)) {
-                startCity = city;
-                continue;
-            }
-            if (end.equals(city.name))
-                endCity = city;
-        }
+        return builder.build();
+    }
 
-        Map<City, Integer> cities = new HashMap<>();
-        for (City city : region.cities) {
-            cities.put(city, Integer.MAX_VALUE);
-        }
-        cities.put(startCity, 0);
-        Map<City, City> predecessor = new HashMap<>();
-        predecessor.put(startCity, startCity);
-
-        Queue<RoutingEntry> citiesByDis = new PriorityQueue<>(region.cities.size(),
-                Comparator.comparingInt(r -> r.distance));
-        citiesByDis.add(new RoutingEntry(startCity, 0));
-        Set<City> visited = new HashSet<>();
-
-        // Build a map that stores the neighbors and distances to them for each city.
-        Map<City, List<RoutingEntry>> neighbors = new HashMap<>();
-        for (Street street : region.streets) {
-            if (!neighbors.containsKey(street.from)) {
-                neighbors.put(street.from, new ArrayList<>());
-            }
-            if (!neighbors.containsKey(street.to)) {
-                neighbors.put(street.to, new ArrayList<>());
-            }
+    private List<City> GetFastestRoute(String start, String end, Region region, DijkstraEngine engine) {
+        long search = QueryMetrics.startPhase();
+        int[] path = FindPath(start, end, region, engine);
+        QueryMetrics.endPhase(QueryMetrics.SEARCH, search);
 
-            // Streets a bidirectional
-            neighbors.get(street.from).add(new RoutingEntry(street.to, street.length));
-            neighbors.get(street.to).add(new RoutingEntry(street.from, street.length));
-        }
+        long extract = QueryMetrics.startPhase();
+        List<City> result = ToCities(path, region);
+        QueryMetrics.endPhase(QueryMetrics.EXTRACT, extract);
 
-        // Dijkstra's algorithm
-        while (!citiesByDis.isEmpty()) {
-            startCity = citiesByDis.remove().city;
-            if (visited.contains(startCity))
-                continue;
-
-            visited.add(startCity);
-            for (RoutingEntry neighbor : neighbors.get(startCity)) {
-                if (cities.get(startCity) + neighbor.distance < cities.get(neighbor.city)) {
-                    cities.put(neighbor.city, cities.get(startCity) + neighbor.distance);
-                    predecessor.put(neighbor.city, startCity);
-                    citiesByDis.add(new RoutingEntry(neighbor.city, cities.get(neighbor.city)));
-                }
-            }
-        }
+        return result;
+    }
 
-        List<City> result = new ArrayList<>();
-        City farestCity = endCity;
-        result.add(farestCity);
-        while (!farestCity.equals(predecessor.get(farestCity))) {
-            farestCity = predecessor.get(farestCity);
-            result.add(farestCity);
-        }
+    int[] FindPath(String start, String end, Region region, DijkstraEngine engine) {
+        City startCity = region.registry.get(start);
+        City endCity = region.registry.get(end);
+
+        // Dijkstra's algorithm, stops once endCity is settled
+        engine.run(startCity.id, endCity.id);
+        return engine.path(endCity.id);
+    }
 
-        Collections.reverse(result);
+    List<City> ToCities(int[] path, Region region) {
+        List<City> result = new ArrayList<>();
+        for (int city : path)
+            result.add(region.registry.get(city));
         return result;
     }
 
-    private static class City {
+    static class City {
 
         String name;
+        int id; // dense id from the CityRegistry, also the node in the RoutingGraph
         List<City> neighbors;
 
-        private City(String name) {
+        private City(String name, int id) {
             this.name = name;
+            this.id = id;
             neighbors = new ArrayList<>();
         }
 
+        // One City per name (CityRegistry), so identity is equality
         @Override
         public boolean equals(Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (!(o instanceof City)) {
-                return false;
-            }
-            City city = (City) o;
-            return Objects.equals(name, city.name) && Objects.equals(neighbors, city.neighbors);
+            return this == o;
         }
 
+        // name hash is cached by String and keeps the order of the street set
         @Override
         public int hashCode() {
             return name.hashCode();
@@ -168,7 +140,7 @@ public class NavigationR {
         }
     }
 
-    private static class Street {
+    static class Street {
 
         City from;
         City to;
@@ -205,14 +177,16 @@ public class NavigationR {
         }
     }
 
-    private static class Region {
+    static class Region {
 
         Set<City> cities;
         Set<Street> streets;
+        CityRegistry<City> registry;
 
-        private Region(Set<City> cities, Set<Street> streets) {
-            this.cities = cities;
+        private Region(CityRegistry<City> registry, Set<Street> streets) {
+            this.cities = new HashSet<>(registry.cities());
             this.streets = streets;
+            this.registry = registry;
         }
 
         @Override
@@ -237,15 +211,4 @@ public class NavigationR {
             return "Region{" + "cities=" + cities + ", streets=" + streets + '}';
         }
     }
-
-    private static class RoutingEntry {
-
-        City city;
-        int distance;
-
-        private RoutingEntry(City city, int distance) {
-            this.city = city;
-            this.distance = distance;
-        }
-    }
 }
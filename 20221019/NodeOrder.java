@@ -0,0 +1,285 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+// Renumbering of the nodes of a RoutingGraph so that nodes that are close in
+// the street network are close in the arrays, too. City ids follow the order
+// of the input file, which can be arbitrary; then every relaxation touches a
+// random cache line of the distance, epoch and heap arrays. After the
+// renumbering, neighbors mostly share cache lines and pages.
+// Orders:
+//   bfs      breadth-first search order, component by component
+//   rcm      reverse Cuthill-McKee: BFS from a pseudo-peripheral node that
+//            visits neighbors by increasing degree, reversed; keeps the
+//            difference between neighbor ids (the bandwidth) small
+//   hilbert  position of the city's coordinates on a Hilbert curve
+// Engines only see the new ids. Everything that leaves them (paths, trees)
+// is translated back with oldId/toOld at the API boundary.
+final class NodeOrder {
+
+    // Cells per axis of the Hilbert curve, 2^15 keeps the index below 2^30.
+    private static final int HILBERT_ORDER = 15;
+
+    // newIds[old id] is the new id, oldIds[new id] the old one.
+    private final int[] newIds;
+    private final int[] oldIds;
+
+    private NodeOrder(int[] oldIds) {
+        this.oldIds = oldIds;
+        newIds = new int[oldIds.length];
+        for (int id = 0; id < oldIds.length; id++) {
+            newIds[oldIds[id]] = id;
+        }
+    }
+
+    // "bfs", "rcm" or "hilbert"; hilbert needs coordinates (x and y not null).
+    static NodeOrder byName(String name, RoutingGraph graph, double[] x, double[] y) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "bfs":
+                return breadthFirst(graph);
+            case "rcm":
+                return reverseCuthillMcKee(graph);
+            case "hilbert":
+                if (x == null || y == null) {
+                    throw new IllegalArgumentException("The hilbert order needs coordinates for every city");
+                }
+                return hilbert(x, y);
+            default:
+                throw new IllegalArgumentException("Unknown node order " + name + ", expected one of bfs, rcm, hilbert");
+        }
+    }
+
+    static NodeOrder breadthFirst(RoutingGraph graph) {
+        int[] order = new int[graph.nodeCount];
+        boolean[] visited = new boolean[graph.nodeCount];
+        int size = 0;
+        for (int start = 0; start < graph.nodeCount; start++) {
+            if (!visited[start]) {
+                visited[start] = true;
+                order[size] = start;
+                size = breadthFirst(graph, order, size, size + 1, visited, false, null);
+            }
+        }
+        return new NodeOrder(order);
+    }
+
+    static NodeOrder reverseCuthillMcKee(RoutingGraph graph) {
+        int n = graph.nodeCount;
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        // Components start at a node of minimum degree among the unvisited ones.
+        int[] byDegree = sortedByDegree(graph);
+        int[] lastLevel = new int[1];
+        int size = 0;
+        for (int candidate : byDegree) {
+            if (visited[candidate]) {
+                continue;
+            }
+            // One step of George and Liu: a node of minimum degree in the last
+            // BFS level is far from everything else in its component.
+            visited[candidate] = true;
+            order[size] = candidate;
+            int end = breadthFirst(graph, order, size, size + 1, visited, false, lastLevel);
+            int start = order[lastLevel[0]];
+            for (int i = lastLevel[0] + 1; i < end; i++) {
+                if (graph.degree(order[i]) < graph.degree(start)) {
+                    start = order[i];
+                }
+            }
+            for (int i = size; i < end; i++) {
+                visited[order[i]] = false;
+            }
+            visited[start] = true;
+            order[size] = start;
+            size = breadthFirst(graph, order, size, size + 1, visited, true, null);
+        }
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return new NodeOrder(order);
+    }
+
+    // A uniformly random order, the worst case for locality; as a baseline for the others.
+    static NodeOrder shuffled(int nodeCount, Random random) {
+        int[] order = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return new NodeOrder(order);
+    }
+
+    // Sorts the nodes by the Hilbert index of their position, scaled to the bounding box.
+    static NodeOrder hilbert(double[] x, double[] y) {
+        int n = x.length;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int node = 0; node < n; node++) {
+            minX = Math.min(minX, x[node]);
+            maxX = Math.max(maxX, x[node]);
+            minY = Math.min(minY, y[node]);
+            maxY = Math.max(maxY, y[node]);
+        }
+        int cells = 1 << HILBERT_ORDER;
+        double scaleX = maxX > minX ? (cells - 1) / (maxX - minX) : 0;
+        double scaleY = maxY > minY ? (cells - 1) / (maxY - minY) : 0;
+        // Hilbert index in the high 32 bits, node in the low ones.
+        long[] keys = new long[n];
+        for (int node = 0; node < n; node++) {
+            int cellX = (int) ((x[node] - minX) * scaleX);
+            int cellY = (int) ((y[node] - minY) * scaleY);
+            keys[node] = hilbertIndex(cellX, cellY) << 32 | node;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) keys[i];
+        }
+        return new NodeOrder(order);
+    }
+
+    int size() {
+        return oldIds.length;
+    }
+
+    int newId(int oldId) {
+        return newIds[oldId];
+    }
+
+    int oldId(int newId) {
+        return oldIds[newId];
+    }
+
+    // Translates a path of new ids in place and returns it.
+    int[] toOld(int[] path) {
+        for (int i = 0; i < path.length; i++) {
+            path[i] = oldIds[path[i]];
+        }
+        return path;
+    }
+
+    // The same graph under the new ids. Every node keeps its edges in their
+    // order, only the ids change.
+    RoutingGraph apply(RoutingGraph graph) {
+        if (graph.nodeCount != oldIds.length) {
+            throw new IllegalArgumentException("Order of " + oldIds.length + " nodes for a graph with "
+                    + graph.nodeCount);
+        }
+        int[] offsets = new int[graph.nodeCount + 1];
+        int[] targets = new int[graph.edgeCount()];
+        int[] weights = new int[graph.edgeCount()];
+        for (int node = 0; node < graph.nodeCount; node++) {
+            int old = oldIds[node];
+            int from = graph.offsets[old];
+            int degree = graph.offsets[old + 1] - from;
+            int to = offsets[node];
+            for (int i = 0; i < degree; i++) {
+                targets[to + i] = newIds[graph.targets[from + i]];
+            }
+            System.arraycopy(graph.weights, from, weights, to, degree);
+            offsets[node + 1] = to + degree;
+        }
+        return RoutingGraph.of(offsets, targets, weights);
+    }
+
+    // values indexed by new id; null stays null.
+    double[] apply(double[] values) {
+        if (values == null) {
+            return null;
+        }
+        double[] permuted = new double[values.length];
+        for (int node = 0; node < values.length; node++) {
+            permuted[node] = values[oldIds[node]];
+        }
+        return permuted;
+    }
+
+    String[] apply(String[] values) {
+        String[] permuted = new String[values.length];
+        for (int node = 0; node < values.length; node++) {
+            permuted[node] = values[oldIds[node]];
+        }
+        return permuted;
+    }
+
+    // BFS over order[head .. tail), which already holds the visited start.
+    // Returns the new tail. byDegree visits unvisited neighbors by increasing
+    // degree; lastLevel, if not null, receives the index of the first node of
+    // the last BFS level.
+    private static int breadthFirst(RoutingGraph graph, int[] order, int head, int tail, boolean[] visited,
+            boolean byDegree, int[] lastLevel) {
+        int levelEnd = tail;
+        if (lastLevel != null) {
+            lastLevel[0] = head;
+        }
+        while (head < tail) {
+            if (head == levelEnd) {
+                // head starts the next level, the last one so far
+                levelEnd = tail;
+                if (lastLevel != null) {
+                    lastLevel[0] = head;
+                }
+            }
+            int node = order[head++];
+            int first = tail;
+            for (int edge = graph.offsets[node]; edge < graph.offsets[node + 1]; edge++) {
+                int neighbor = graph.targets[edge];
+                if (!visited[neighbor]) {
+                    visited[neighbor] = true;
+                    order[tail++] = neighbor;
+                }
+            }
+            if (byDegree) {
+                // Insertion sort, street networks have few neighbors per node.
+                for (int i = first + 1; i < tail; i++) {
+                    int current = order[i];
+                    int j = i - 1;
+                    while (j >= first && graph.degree(order[j]) > graph.degree(current)) {
+                        order[j + 1] = order[j];
+                        j--;
+                    }
+                    order[j + 1] = current;
+                }
+            }
+        }
+        return tail;
+    }
+
+    private static int[] sortedByDegree(RoutingGraph graph) {
+        long[] keys = new long[graph.nodeCount];
+        for (int node = 0; node < graph.nodeCount; node++) {
+            keys[node] = (long) graph.degree(node) << 32 | node;
+        }
+        Arrays.sort(keys);
+        int[] nodes = new int[graph.nodeCount];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = (int) keys[i];
+        }
+        return nodes;
+    }
+
+    // Position of cell (x, y) on the Hilbert curve through the 2^15 x 2^15 grid.
+    private static long hilbertIndex(int x, int y) {
+        long index = 0;
+        for (int s = 1 << (HILBERT_ORDER - 1); s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = (1 << HILBERT_ORDER) - 1 - x;
+                    y = (1 << HILBERT_ORDER) - 1 - y;
+                }
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+// Effect of NodeOrder on query time. A RegionGenerator region (planar, with
+// coordinates) is parsed and its cities are shuffled, as if the input file
+// listed them in hash order. The shuffled region is then renumbered by every
+// order and the same random queries are run on each: point-to-point Dijkstra
+// and one-to-all Dijkstra, after a warm-up. Distances are checked against
+// the shuffled region. Besides the times, the mean id distance between the
+// two ends of an edge shows how local an order is.
+// Prints one CSV row per order.
+// Usage: java NodeOrderBenchmark [nodes] [shape, see RegionGenerator] [queries]
+public class NodeOrderBenchmark {
+
+    private static final String[] ORDERS = {"file", "shuffled", "bfs", "rcm", "hilbert"};
+    private static final int WARMUP_QUERIES = 20;
+    private static final int ONE_TO_ALL_RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String shape = args.length > 1 ? args[1] : "planar";
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        Path file = Files.createTempFile("regions", ".txt");
+        RoutingRegion fileOrder;
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                new RegionGenerator(shape, 42, null, true).write(nodes, out);
+            }
+            fileOrder = RegionParser.parse(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        Random random = new Random(42);
+        NodeOrder shuffle = NodeOrder.shuffled(fileOrder.graph.nodeCount(), random);
+        RoutingRegion shuffled = fileOrder.reordered(shuffle);
+        System.err.println(shuffled);
+
+        // Queries and reference distances by city name, i.e. in shuffled ids.
+        int[] sources = new int[WARMUP_QUERIES + queries];
+        int[] targets = new int[WARMUP_QUERIES + queries];
+        long[] expected = new long[sources.length];
+        DijkstraEngine reference = new DijkstraEngine(shuffled.routingGraph());
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(shuffled.graph.nodeCount());
+            targets[i] = random.nextInt(shuffled.graph.nodeCount());
+            expected[i] = reference.run(sources[i], targets[i]);
+        }
+
+        System.out.println("order,nodes,edges,reorder ms,mean edge id gap,point-to-point us,one-to-all ms");
+        for (String name : ORDERS) {
+            long start = System.nanoTime();
+            RoutingGraph graph;
+            int[] ids = new int[shuffled.graph.nodeCount()];
+            if ("file".equals(name) || "shuffled".equals(name)) {
+                // the generator's ids, and the shuffled ones everything else starts from
+                graph = "file".equals(name) ? fileOrder.routingGraph() : shuffled.routingGraph();
+                for (int id = 0; id < ids.length; id++) {
+                    ids[id] = "file".equals(name) ? shuffle.oldId(id) : id;
+                }
+            } else {
+                NodeOrder order = NodeOrder.byName(name, shuffled.routingGraph(), shuffled.x, shuffled.y);
+                graph = order.apply(shuffled.routingGraph());
+                for (int id = 0; id < ids.length; id++) {
+                    ids[id] = order.newId(id);
+                }
+            }
+            double reorderMillis = (System.nanoTime() - start) / 1e6;
+
+            DijkstraEngine engine = new DijkstraEngine(graph);
+            long queryNanos = 0;
+            for (int i = 0; i < sources.length; i++) {
+                long queryStart = System.nanoTime();
+                long distance = engine.run(ids[sources[i]], ids[targets[i]]);
+                if (i >= WARMUP_QUERIES) {
+                    queryNanos += System.nanoTime() - queryStart;
+                }
+                if (distance != expected[i]) {
+                    throw new IllegalStateException(name + " changed the distance of query " + i);
+                }
+            }
+            long oneToAllNanos = 0;
+            for (int i = 0; i <= ONE_TO_ALL_RUNS; i++) {
+                long runStart = System.nanoTime();
+                engine.run(ids[sources[i]]);
+                if (i > 0) {
+                    oneToAllNanos += System.nanoTime() - runStart;
+                }
+            }
+            System.out.printf(Locale.ROOT, "%s,%d,%d,%.1f,%.1f,%.1f,%.1f%n", name, graph.nodeCount, graph.edgeCount(),
+                    reorderMillis, meanEdgeGap(graph), queryNanos / 1e3 / queries,
+                    oneToAllNanos / 1e6 / ONE_TO_ALL_RUNS);
+        }
+    }
+
+    private static double meanEdgeGap(RoutingGraph graph) {
+        long sum = 0;
+        for (int node = 0; node < graph.nodeCount; node++) {
+            for (int edge = graph.offsets[node]; edge < graph.offsets[node + 1]; edge++) {
+                sum += Math.abs(graph.targets[edge] - node);
+            }
+        }
+        return graph.edgeCount() == 0 ? 0 : (double) sum / graph.edgeCount();
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Per-query counters and phase timings, switched on with -Dnavigation.metrics=true.
+// The switch is a static final constant, so with metrics off the JIT removes
+// every guarded counter from the search loops and a query pays nothing.
+// The engines record one value per search into the histograms below; every
+// search counts, including those during preprocessing (e.g. landmark selection).
+// Phases are timed by the Navigation variants:
+//   parse    reading the region
+//   build    RoutingGraph and preprocessing (heuristic, hierarchy)
+//   search   the shortest-path search, for RoutingEngine.route including the int[] path
+//   extract  turning node ids back into cities or output lines
+// The histograms are exported as CSV to -Dnavigation.metrics.file, or to
+// stderr without one, so the answer on stdout stays unchanged.
+final class QueryMetrics {
+
+    static final boolean ENABLED = Boolean.getBoolean("navigation.metrics");
+
+    static final Histogram SETTLED_NODES = new Histogram("settled nodes", "nodes");
+    static final Histogram RELAXED_EDGES = new Histogram("relaxed edges", "edges");
+    // Heap entries that are removed but no longer current. The IndexedMinHeap
+    // never keeps more than one entry per node, so these stay 0 for it.
+    static final Histogram STALE_POPS = new Histogram("stale pops", "entries");
+    // Inserts and decrease-keys.
+    static final Histogram HEAP_PUSHES = new Histogram("heap pushes", "entries");
+    static final Histogram PARSE = new Histogram("parse", "ns");
+    static final Histogram BUILD = new Histogram("build", "ns");
+    static final Histogram SEARCH = new Histogram("search", "ns");
+    static final Histogram EXTRACT = new Histogram("extract", "ns");
+
+    private static final Histogram[] ALL = {
+        SETTLED_NODES, RELAXED_EDGES, STALE_POPS, HEAP_PUSHES, PARSE, BUILD, SEARCH, EXTRACT
+    };
+
+    private QueryMetrics() {
+    }
+
+    static void recordSearch(int settledNodes, int relaxedEdges, int stalePops, int heapPushes) {
+        SETTLED_NODES.record(settledNodes);
+        RELAXED_EDGES.record(relaxedEdges);
+        STALE_POPS.record(stalePops);
+        HEAP_PUSHES.record(heapPushes);
+    }
+
+    // Start of a timed phase, 0 when metrics are off.
+    static long startPhase() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    static void endPhase(Histogram phase, long start) {
+        if (ENABLED) {
+            phase.record(System.nanoTime() - start);
+        }
+    }
+
+    static void reset() {
+        for (Histogram histogram : ALL) {
+            histogram.reset();
+        }
+    }
+
+    static void export(Appendable out) throws IOException {
+        out.append(Histogram.CSV_HEADER).append('\n');
+        for (Histogram histogram : ALL) {
+            out.append(histogram.toCsv()).append('\n');
+        }
+    }
+
+    // Exports to -Dnavigation.metrics.file or stderr, does nothing when metrics are off.
+    static void report() {
+        if (!ENABLED) {
+            return;
+        }
+        String file = System.getProperty("navigation.metrics.file");
+        try {
+            if (file == null) {
+                PrintStream err = System.err;
+                export(err);
+                err.flush();
+            } else {
+                try (Writer writer = Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8)) {
+                    export(writer);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write metrics: " + e.getMessage());
+        }
+    }
+}
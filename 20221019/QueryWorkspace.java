@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+// Scratch state of a single shortest-path query: tentative distances,
+// predecessors and the heap. A workspace is meant to be reused by every query
+// of one thread. Instead of clearing the arrays, reset() advances an epoch
+// counter; entries stamped with an older epoch count as unreached. Resetting
+// thus only costs the heap entries left over from the previous query.
+final class QueryWorkspace {
+
+    static final long INFINITY = Long.MAX_VALUE;
+    static final int NO_PREDECESSOR = -1;
+
+    private final long[] distances;
+    private final int[] predecessors;
+    private final int[] epochs;
+    private final IndexedMinHeap heap;
+    private int epoch;
+    private int reachedCount;
+
+    QueryWorkspace(int nodeCount) {
+        distances = new long[nodeCount];
+        predecessors = new int[nodeCount];
+        epochs = new int[nodeCount];
+        heap = new IndexedMinHeap(nodeCount);
+        epoch = 1;
+    }
+
+    int nodeCount() {
+        return distances.length;
+    }
+
+    void reset() {
+        heap.clear();
+        reachedCount = 0;
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Only after ~2^31 queries: stamps could otherwise collide with stale ones.
+            Arrays.fill(epochs, 0);
+            epoch = 1;
+        }
+    }
+
+    boolean isReached(int node) {
+        return epochs[node] == epoch;
+    }
+
+    long distance(int node) {
+        return epochs[node] == epoch ? distances[node] : INFINITY;
+    }
+
+    // The source has itself as predecessor, unreached nodes have NO_PREDECESSOR.
+    int predecessor(int node) {
+        return epochs[node] == epoch ? predecessors[node] : NO_PREDECESSOR;
+    }
+
+    void reach(int node, long distance, int predecessor) {
+        if (epochs[node] != epoch) {
+            epochs[node] = epoch;
+            reachedCount++;
+        }
+        distances[node] = distance;
+        predecessors[node] = predecessor;
+    }
+
+    // Node ids from source to target along the predecessors of this query,
+    // empty if target is unreached.
+    int[] path(int source, int target) {
+        return isReached(target) ? path(predecessors, source, target) : new int[0];
+    }
+
+    // Node ids from source to target in a tree given by its predecessors, in
+    // which source is its own predecessor or has none; empty if target is
+    // not in the tree.
+    static int[] path(int[] predecessors, int source, int target) {
+        if (target != source && predecessors[target] == NO_PREDECESSOR) {
+            return new int[0];
+        }
+        int length = 1;
+        for (int node = target; node != source; node = predecessors[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int node = target, i = length - 1; i >= 0; node = predecessors[node], i--) {
+            path[i] = node;
+        }
+        return path;
+    }
+
+    // Number of nodes that received a tentative distance since the last reset.
+    int reachedCount() {
+        return reachedCount;
+    }
+
+    IndexedMinHeap heap() {
+        return heap;
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+// Radix heap for monotone long keys. Bucket 0 holds the entries with key
+// lastKey, bucket i > 0 those whose key differs from lastKey first in bit
+// i - 1. When bucket 0 is empty, the first non-empty bucket is scanned for
+// its minimum, which becomes lastKey, and its entries move to lower buckets.
+// An entry moves at most 64 times, so an operation costs O(log C) amortised
+// for any street length C, without comparisons between entries.
+final class RadixHeap implements MonotoneQueue {
+
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private final long[][] keys = new long[BUCKETS][];
+    private final int[][] nodes = new int[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    private int size;
+    private long lastKey;
+
+    RadixHeap() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            keys[bucket] = new long[16];
+            nodes[bucket] = new int[16];
+        }
+    }
+
+    @Override
+    public void add(int node, long key) {
+        push(bucket(key), node, key);
+        size++;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int removeMin() {
+        if (sizes[0] == 0) {
+            int bucket = 1;
+            while (sizes[bucket] == 0) {
+                bucket++;
+            }
+            long[] bucketKeys = keys[bucket];
+            int[] bucketNodes = nodes[bucket];
+            int count = sizes[bucket];
+            long min = bucketKeys[0];
+            for (int i = 1; i < count; i++) {
+                min = Math.min(min, bucketKeys[i]);
+            }
+            lastKey = min;
+            sizes[bucket] = 0;
+            // Every key of the bucket now differs from lastKey in a lower bit only.
+            for (int i = 0; i < count; i++) {
+                push(bucket(bucketKeys[i]), bucketNodes[i], bucketKeys[i]);
+            }
+        }
+        size--;
+        return nodes[0][--sizes[0]];
+    }
+
+    @Override
+    public long lastKey() {
+        return lastKey;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        size = 0;
+        lastKey = 0;
+    }
+
+    private int bucket(long key) {
+        return key == lastKey ? 0 : Long.SIZE - Long.numberOfLeadingZeros(key ^ lastKey);
+    }
+
+    private void push(int bucket, int node, long key) {
+        int count = sizes[bucket];
+        if (count == keys[bucket].length) {
+            keys[bucket] = Arrays.copyOf(keys[bucket], count * 2);
+            nodes[bucket] = Arrays.copyOf(nodes[bucket], count * 2);
+        }
+        keys[bucket][count] = key;
+        nodes[bucket][count] = node;
+        sizes[bucket] = count + 1;
+    }
+}
@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+// Writes synthetic regions in the "cities:" / "streets:" format of input.txt
+// for load and scaling tests. The output depends only on the arguments and
+// the seed. Nothing per street is kept in memory: lines are formatted into a
+// byte buffer and streamed to disk, and everything a street needs about its
+// end points (e.g. coordinates) is recomputed from a hash of seed and node id,
+// so even 100M-street regions need no more than a few megabytes of heap.
+//
+// Shapes:
+//   grid            side x side grid, side = sqrt(nodes)
+//   planar          road-like: jittered grid, some streets missing, some cells
+//                   with a diagonal, every 8th row and column an arterial road
+//                   at half the cost; no two streets cross
+//   scale-free[:m]  every node connects to m earlier nodes picked with a
+//                   power-law preference for low ids (Chung-Lu style), default m = 4
+// Weights: uniform:min:max, normal:mean:deviation or exponential:mean. For
+// planar they are the cost per unit of distance, otherwise the street length.
+// Usage: java RegionGenerator shape nodes file [seed] [weights] [coordinates]
+// With "coordinates", every city line gets "x y", which NavigationL and
+// NavigationR cannot read.
+public class RegionGenerator {
+
+    private static final int ARTERIAL_SPACING = 8;
+    private static final double PLANAR_JITTER = 0.3;
+    private static final double PLANAR_MISSING_STREETS = 0.15;
+    private static final double PLANAR_DIAGONALS = 0.2;
+    // P(degree = k) ~ k^-3, as in the Barabasi-Albert model
+    private static final double SCALE_FREE_EXPONENT = 3;
+
+    private final String shape;
+    private final int edgesPerNode;
+    private final long seed;
+    private final Weights weights;
+    private final boolean coordinates;
+
+    RegionGenerator(String shape, long seed, Weights weights, boolean coordinates) {
+        String[] parts = shape.split(":");
+        this.shape = parts[0];
+        if (!"grid".equals(this.shape) && !"planar".equals(this.shape) && !"scale-free".equals(this.shape)) {
+            throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        edgesPerNode = parts.length > 1 ? Integer.parseInt(parts[1]) : 4;
+        this.seed = seed;
+        this.weights = weights;
+        this.coordinates = coordinates;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java RegionGenerator grid|planar|scale-free[:m] nodes file"
+                    + " [seed] [weights] [coordinates]");
+            return;
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        Weights weights = args.length > 4 ? Weights.parse(args[4]) : null;
+        boolean coordinates = args.length > 5 && "coordinates".equals(args[5]);
+        RegionGenerator generator = new RegionGenerator(args[0], seed, weights, coordinates);
+        long start = System.nanoTime();
+        long streets;
+        try (OutputStream out = Files.newOutputStream(Path.of(args[2]))) {
+            streets = generator.write(Integer.parseInt(args[1]), out);
+        }
+        System.err.printf(Locale.ROOT, "%d streets, %d bytes in %d ms%n",
+                streets, Files.size(Path.of(args[2])), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Writes a region with about the given number of cities, returns the number of streets.
+    long write(int nodes, OutputStream stream) throws IOException {
+        LineWriter out = new LineWriter(stream);
+        switch (shape) {
+            case "grid":
+                return writeGrid(Math.max(1, (int) Math.round(Math.sqrt(nodes))), out);
+            case "planar":
+                return writePlanar(Math.max(1, (int) Math.round(Math.sqrt(nodes))), out);
+            default:
+                return writeScaleFree(nodes, out);
+        }
+    }
+
+    private long writeGrid(int side, LineWriter out) throws IOException {
+        Weights lengths = weights != null ? weights : new Weights(Weights.Kind.UNIFORM, 100, 199);
+        writeCities(side * side, side, 0, out);
+        SplittableRandom random = new SplittableRandom(seed);
+        long streets = 0;
+        out.text("streets:").newLine();
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                if (column + 1 < side) {
+                    out.street(node, node + 1, lengths.sample(random));
+                    streets++;
+                }
+                if (row + 1 < side) {
+                    out.street(node, node + side, lengths.sample(random));
+                    streets++;
+                }
+            }
+        }
+        out.flush();
+        return streets;
+    }
+
+    // All horizontal streets and the first column are always there, so the
+    // region stays connected whichever other streets are left out.
+    private long writePlanar(int side, LineWriter out) throws IOException {
+        Weights costs = weights != null ? weights : new Weights(Weights.Kind.UNIFORM, 80, 120);
+        writeCities(side * side, side, PLANAR_JITTER, out);
+        SplittableRandom random = new SplittableRandom(seed);
+        long streets = 0;
+        out.text("streets:").newLine();
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                if (column + 1 < side) {
+                    out.street(node, node + 1, planarLength(node, node + 1, side, row % ARTERIAL_SPACING == 0,
+                            costs, random));
+                    streets++;
+                }
+                if (row + 1 < side && (column == 0 || random.nextDouble() >= PLANAR_MISSING_STREETS)) {
+                    out.street(node, node + side, planarLength(node, node + side, side,
+                            column % ARTERIAL_SPACING == 0, costs, random));
+                    streets++;
+                }
+                // One diagonal per cell at most, it cannot cross the other one.
+                if (row + 1 < side && column + 1 < side && random.nextDouble() < PLANAR_DIAGONALS) {
+                    out.street(node, node + side + 1, planarLength(node, node + side + 1, side, false, costs,
+                            random));
+                    streets++;
+                }
+            }
+        }
+        out.flush();
+        return streets;
+    }
+
+    private int planarLength(int from, int to, int side, boolean arterial, Weights costs, SplittableRandom random) {
+        double distance = Math.hypot(x(from, side, PLANAR_JITTER) - x(to, side, PLANAR_JITTER),
+                y(from, side, PLANAR_JITTER) - y(to, side, PLANAR_JITTER));
+        double cost = costs.sample(random) * (arterial ? 0.5 : 1);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(distance * cost)));
+    }
+
+    // Node i > 0 connects to min(m, i) earlier nodes j with P(j) ~ (j + 1)^-a,
+    // drawn by inverting the continuous approximation of that distribution, so
+    // no degree table is needed. Low ids become hubs; the first street of each
+    // node keeps the region connected. A repeated pair is possible and harmless.
+    private long writeScaleFree(int nodes, LineWriter out) throws IOException {
+        Weights lengths = weights != null ? weights : new Weights(Weights.Kind.UNIFORM, 1, 1000);
+        int side = Math.max(1, (int) Math.ceil(Math.sqrt(nodes)));
+        writeCities(nodes, side, 0.5, out);
+        SplittableRandom random = new SplittableRandom(seed);
+        double a = 1 / (SCALE_FREE_EXPONENT - 1);
+        long streets = 0;
+        out.text("streets:").newLine();
+        for (int node = 1; node < nodes; node++) {
+            double upper = Math.pow(node + 1, 1 - a); // CDF bound for j in [0, node)
+            for (int k = 0; k < Math.min(edgesPerNode, node); k++) {
+                double u = 1 + random.nextDouble() * (upper - 1);
+                int target = Math.min(node - 1, (int) Math.pow(u, 1 / (1 - a)) - 1);
+                out.street(node, Math.max(0, target), lengths.sample(random));
+                streets++;
+            }
+        }
+        out.flush();
+        return streets;
+    }
+
+    private void writeCities(int nodes, int side, double jitter, LineWriter out) throws IOException {
+        out.text("cities:").newLine();
+        for (int node = 0; node < nodes; node++) {
+            out.name(node);
+            if (coordinates) {
+                out.text(" ").decimal(x(node, side, jitter)).text(" ").decimal(y(node, side, jitter));
+            }
+            out.newLine();
+        }
+    }
+
+    // Position on a side x side lattice, moved by up to jitter in each direction.
+    private double x(int node, int side, double jitter) {
+        return node % side + jitter * (2 * unit(node, 1) - 1);
+    }
+
+    private double y(int node, int side, double jitter) {
+        return node / side + jitter * (2 * unit(node, 2) - 1);
+    }
+
+    // Deterministic value in [0, 1) for (seed, node, salt), SplitMix64 finalizer.
+    private double unit(int node, int salt) {
+        long z = seed + 0x9E3779B97F4A7C15L * ((long) node * 4 + salt + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    static final class Weights {
+
+        enum Kind { UNIFORM, NORMAL, EXPONENTIAL }
+
+        private final Kind kind;
+        private final double first;
+        private final double second;
+
+        Weights(Kind kind, double first, double second) {
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
+        }
+
+        // e.g. "uniform:1:100", "normal:100:20", "exponential:50"
+        static Weights parse(String description) {
+            String[] parts = description.split(":");
+            Kind kind = Kind.valueOf(parts[0].toUpperCase(Locale.ROOT));
+            double first = Double.parseDouble(parts[1]);
+            double second = parts.length > 2 ? Double.parseDouble(parts[2]) : 0;
+            return new Weights(kind, first, second);
+        }
+
+        // At least 1, a street of length 0 would make every distance ambiguous.
+        int sample(SplittableRandom random) {
+            double value;
+            switch (kind) {
+                case UNIFORM:
+                    value = first + random.nextDouble() * (second - first + 1);
+                    break;
+                case NORMAL:
+                    value = first + second * gaussian(random);
+                    break;
+                default:
+                    value = -first * Math.log(1 - random.nextDouble());
+                    break;
+            }
+            return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.floor(value)));
+        }
+
+        private static double gaussian(SplittableRandom random) {
+            // Box-Muller, one of the two values is enough here
+            double u = 1 - random.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+        }
+    }
+
+    // ASCII lines into a byte buffer, without a String per number.
+    private static final class LineWriter {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int size;
+
+        private LineWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        LineWriter street(int from, int to, int length) throws IOException {
+            return name(from).text(" ").name(to).text(" ").number(length).newLine();
+        }
+
+        LineWriter name(int node) throws IOException {
+            return text("n").number(node);
+        }
+
+        LineWriter text(String text) throws IOException {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                buffer[size++] = (byte) text.charAt(i);
+            }
+            return this;
+        }
+
+        LineWriter number(long value) throws IOException {
+            ensure(20);
+            if (value < 0) {
+                buffer[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                buffer[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte swap = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = swap;
+            }
+            return this;
+        }
+
+        // Three decimals are plenty for lattice coordinates.
+        LineWriter decimal(double value) throws IOException {
+            long thousandths = Math.round(value * 1000);
+            if (thousandths < 0) {
+                text("-");
+                thousandths = -thousandths;
+            }
+            number(thousandths / 1000).text(".");
+            long fraction = thousandths % 1000;
+            return text(fraction < 100 ? (fraction < 10 ? "00" : "0") : "").number(fraction);
+        }
+
+        LineWriter newLine() throws IOException {
+            ensure(1);
+            buffer[size++] = '\n';
+            return this;
+        }
+
+        void flush() throws IOException {
+            out.write(buffer, 0, size);
+            size = 0;
+            out.flush();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (size + bytes > buffer.length) {
+                out.write(buffer, 0, size);
+                size = 0;
+            }
+        }
+    }
+}
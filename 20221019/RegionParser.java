@@ -0,0 +1,442 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+// Reads the "cities:" / "streets:" format of input.txt straight into a
+// RoutingRegion. The file is read through a FileChannel into one reusable
+// byte buffer and scanned in place: a city name becomes a String once, when
+// its city line is read, street lines are resolved against a hash table over
+// the raw name bytes and their lengths are parsed without creating Strings.
+// Unlike readInput, a city line after the streets section is rejected, and so
+// is a street between unknown cities.
+final class RegionParser {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 64 << 20;
+
+    private enum Section { NONE, CITIES, STREETS }
+
+    private final NameTable cities = new NameTable();
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private boolean allCoordinates = true;
+    // creates the builder the streets go into, once the number of cities is known
+    private final IntFunction<GraphBuilder> builders;
+    private GraphBuilder streets;
+    private Section section = Section.NONE;
+    private long lineNumber;
+
+    private RegionParser(IntFunction<GraphBuilder> builders) {
+        this.builders = builders;
+    }
+
+    static RoutingRegion parse(Path file) throws IOException {
+        return new RegionParser(RoutingGraph.Builder::new).read(file);
+    }
+
+    // Like parse, but only the cities section is read sequentially. The streets
+    // section is split into byte ranges on line boundaries and the ranges are
+    // parsed on the pool, each into its own builder; the builders are merged in
+    // file order, so the graph is the same as the one parse returns. Errors in
+    // street lines report a byte offset instead of a line number.
+    static RoutingRegion parse(Path file, ForkJoinPool pool) throws IOException {
+        return parse(file, pool, RoutingGraph.Builder::new);
+    }
+
+    // Like parse(file, pool), with the streets streamed into the builder that
+    // builders creates for the number of cities, e.g. straight into a
+    // CompressedRoutingGraph. Chunks are parsed in waves of one per thread and
+    // drained into it in file order, so only a wave of them is held at a time.
+    static RoutingRegion parse(Path file, ForkJoinPool pool, IntFunction<GraphBuilder> builders) throws IOException {
+        return new RegionParser(builders).read(file, pool);
+    }
+
+    private RoutingRegion read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readLines(channel, false);
+        }
+        return finish();
+    }
+
+    private RoutingRegion read(Path file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long streetsStart = readLines(channel, true);
+            if (streetsStart >= 0) {
+                long[] bounds = chunkBounds(channel, streetsStart, channel.size(), pool.getParallelism());
+                int chunkCount = bounds.length - 1;
+                for (int wave = 0; wave < chunkCount; wave += pool.getParallelism()) {
+                    int first = wave;
+                    RoutingGraph.Builder[] chunks =
+                            new RoutingGraph.Builder[Math.min(pool.getParallelism(), chunkCount - first)];
+                    try {
+                        pool.submit(() -> IntStream.range(0, chunks.length).parallel().forEach(chunk -> {
+                            try {
+                                long start = bounds[first + chunk];
+                                chunks[chunk] = parseChunk(channel, cities, start, bounds[first + chunk + 1]);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })).join();
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    for (RoutingGraph.Builder chunk : chunks) {
+                        streets.addAll(chunk);
+                    }
+                }
+            }
+        }
+        return finish();
+    }
+
+    // Parses lines from the start of the channel. With stopAtStreets, returns the
+    // file position right after the streets header line, -1 if the file has none.
+    private long readLines(FileChannel channel, boolean stopAtStreets) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        long bufferPosition = 0; // file position of buffer[0]
+        int filled = 0;
+        while (true) {
+            view.limit(buffer.length).position(filled);
+            int read = channel.read(view);
+            if (read < 0) {
+                if (filled > 0) {
+                    parseLine(buffer, 0, filled);
+                }
+                return -1;
+            }
+            filled += read;
+            int lineStart = 0;
+            for (int i = 0; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    parseLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                    if (stopAtStreets && section == Section.STREETS) {
+                        return bufferPosition + lineStart;
+                    }
+                }
+            }
+            // Keep the incomplete last line for the next read.
+            System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+            filled -= lineStart;
+            bufferPosition += lineStart;
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                view = ByteBuffer.wrap(buffer);
+            }
+        }
+    }
+
+    private RoutingRegion finish() {
+        if (streets == null) {
+            streets = builders.apply(cities.size());
+        }
+        int count = cities.size();
+        return new RoutingRegion(cities.names(), streets.build(),
+                allCoordinates ? Arrays.copyOf(x, count) : null,
+                allCoordinates ? Arrays.copyOf(y, count) : null);
+    }
+
+    private void parseLine(byte[] line, int start, int end) throws IOException {
+        lineNumber++;
+        if (startsWith(line, start, end, "cities")) {
+            if (section == Section.STREETS) {
+                throw error("cities after the streets section");
+            }
+            section = Section.CITIES;
+            return;
+        }
+        if (startsWith(line, start, end, "streets")) {
+            section = Section.STREETS;
+            if (streets == null) {
+                streets = builders.apply(cities.size());
+            }
+            return;
+        }
+        int firstStart = skipSpaces(line, start, end);
+        if (firstStart == end || section == Section.NONE) {
+            return;
+        }
+        if (section == Section.STREETS) {
+            try {
+                parseStreet(cities, line, firstStart, end, streets);
+            } catch (IOException e) {
+                throw error(e.getMessage());
+            }
+            return;
+        }
+        int firstEnd = skipToken(line, firstStart, end);
+        int secondStart = skipSpaces(line, firstEnd, end);
+        int secondEnd = skipToken(line, secondStart, end);
+        int thirdStart = skipSpaces(line, secondEnd, end);
+        int thirdEnd = skipToken(line, thirdStart, end);
+        int id = cities.add(line, firstStart, firstEnd);
+        if (id == cities.size() - 1) {
+            addCoordinates(id, line, secondStart, secondEnd, thirdStart, thirdEnd);
+        }
+    }
+
+    // start is the first non-space byte of the line. Only reads the name table,
+    // so chunks can be parsed concurrently once the cities section is done.
+    private static void parseStreet(NameTable cities, byte[] line, int start, int end, GraphBuilder streets)
+            throws IOException {
+        int firstEnd = skipToken(line, start, end);
+        int secondStart = skipSpaces(line, firstEnd, end);
+        int secondEnd = skipToken(line, secondStart, end);
+        int thirdStart = skipSpaces(line, secondEnd, end);
+        int thirdEnd = skipToken(line, thirdStart, end);
+        int from = cities.find(line, start, firstEnd);
+        int to = cities.find(line, secondStart, secondEnd);
+        if (from == RoutingRegion.UNKNOWN_CITY || to == RoutingRegion.UNKNOWN_CITY) {
+            throw new IOException("street between unknown cities");
+        }
+        streets.addStreet(from, to, parseInt(line, thirdStart, thirdEnd));
+    }
+
+    // Chunk boundaries in [start, end): roughly equal ranges, each moved forward
+    // to just after the next line break, so that no line is split.
+    private static long[] chunkBounds(FileChannel channel, long start, long end, int parallelism) throws IOException {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, (end - start) / (parallelism * 4L) + 1));
+        long[] bounds = new long[(int) ((end - start + chunkSize - 1) / chunkSize) + 1];
+        bounds[0] = start;
+        int count = 1;
+        ByteBuffer window = ByteBuffer.allocate(256);
+        for (long position = start + chunkSize; position < end; position += chunkSize) {
+            long bound = Math.max(position, bounds[count - 1]);
+            // A chunk may start at bound if the byte before it is a line break.
+            search:
+            while (bound < end) {
+                window.clear();
+                int read = channel.read(window, bound - 1);
+                if (read < 0) {
+                    bound = end;
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        bound += i;
+                        break search;
+                    }
+                }
+                bound += read;
+            }
+            if (bound >= end) {
+                break;
+            }
+            if (bound > bounds[count - 1]) {
+                bounds[count++] = bound;
+            }
+        }
+        bounds[count++] = end;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static RoutingGraph.Builder parseChunk(FileChannel channel, NameTable cities, long start, long end)
+            throws IOException {
+        byte[] chunk = new byte[Math.toIntExact(end - start)];
+        ByteBuffer view = ByteBuffer.wrap(chunk);
+        while (view.hasRemaining()) {
+            if (channel.read(view, start + view.position()) < 0) {
+                throw new IOException("file ended before byte " + end);
+            }
+        }
+        // About one street per 16 bytes, two edges per street.
+        RoutingGraph.Builder streets = new RoutingGraph.Builder(cities.size(), chunk.length / 8);
+        int lineStart = 0;
+        for (int i = 0; i <= chunk.length; i++) {
+            if (i == chunk.length || chunk[i] == '\n') {
+                try {
+                    parseChunkLine(cities, chunk, lineStart, i, streets);
+                } catch (IOException e) {
+                    throw new IOException(e.getMessage() + " at byte " + (start + lineStart));
+                }
+                lineStart = i + 1;
+            }
+        }
+        return streets;
+    }
+
+    private static void parseChunkLine(NameTable cities, byte[] line, int start, int end,
+                                       RoutingGraph.Builder streets) throws IOException {
+        if (startsWith(line, start, end, "cities")) {
+            throw new IOException("cities after the streets section");
+        }
+        if (startsWith(line, start, end, "streets")) {
+            return;
+        }
+        int firstStart = skipSpaces(line, start, end);
+        if (firstStart < end) {
+            parseStreet(cities, line, firstStart, end, streets);
+        }
+    }
+
+    private void addCoordinates(int id, byte[] line, int xStart, int xEnd, int yStart, int yEnd) {
+        if (id == x.length) {
+            x = Arrays.copyOf(x, id * 2);
+            y = Arrays.copyOf(y, id * 2);
+        }
+        if (yStart == yEnd) {
+            allCoordinates = false;
+            return;
+        }
+        // Only one city line per city, so Double.parseDouble's String is acceptable here.
+        x[id] = Double.parseDouble(new String(line, xStart, xEnd - xStart, StandardCharsets.US_ASCII));
+        y[id] = Double.parseDouble(new String(line, yStart, yEnd - yStart, StandardCharsets.US_ASCII));
+    }
+
+    private static int parseInt(byte[] line, int start, int end) throws IOException {
+        if (start == end) {
+            throw new IOException("street without length");
+        }
+        boolean negative = line[start] == '-';
+        int i = negative ? start + 1 : start;
+        long value = 0;
+        if (i == end) {
+            throw new IOException("malformed street length");
+        }
+        for (; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("malformed street length");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new IOException("street length out of range");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("street length out of range");
+        }
+        return (int) value;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " in line " + lineNumber);
+    }
+
+    private static boolean startsWith(byte[] line, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(byte[] line, int start, int end) {
+        while (start < end && isSpace(line[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int skipToken(byte[] line, int start, int end) {
+        while (start < end && !isSpace(line[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    // '\r' counts as space, so Windows line endings need no special handling.
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    // Open addressing hash table from the raw bytes of a city name to its id.
+    // A slot packs the hash and id + 1 into one long and all names share one byte
+    // pool, so a lookup touches few cache lines even for millions of cities.
+    private static final class NameTable {
+
+        private long[] slots = new long[1024]; // hash << 32 | id + 1, 0 marks a free slot
+        private byte[] pool = new byte[1024];
+        private int[] poolStarts = new int[17]; // name id spans pool[poolStarts[id] .. poolStarts[id + 1])
+        private String[] names = new String[16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        String[] names() {
+            return Arrays.copyOf(names, size);
+        }
+
+        int find(byte[] line, int start, int end) {
+            int hash = hash(line, start, end);
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                if ((int) (slots[slot] >>> 32) == hash) {
+                    int id = (int) slots[slot] - 1;
+                    if (Arrays.equals(pool, poolStarts[id], poolStarts[id + 1], line, start, end)) {
+                        return id;
+                    }
+                }
+            }
+            return RoutingRegion.UNKNOWN_CITY;
+        }
+
+        // Returns the id of the name, a new one if the name was not seen before.
+        int add(byte[] line, int start, int end) {
+            int existing = find(line, start, end);
+            if (existing != RoutingRegion.UNKNOWN_CITY) {
+                return existing;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                poolStarts = Arrays.copyOf(poolStarts, size * 2 + 1);
+            }
+            int length = end - start;
+            int poolEnd = poolStarts[size];
+            while (poolEnd + length > pool.length) {
+                pool = Arrays.copyOf(pool, pool.length * 2);
+            }
+            System.arraycopy(line, start, pool, poolEnd, length);
+            int id = size++;
+            poolStarts[size] = poolEnd + length;
+            names[id] = new String(line, start, length, StandardCharsets.UTF_8);
+            if (size * 2 > slots.length) {
+                rehash(slots.length * 2);
+            } else {
+                insert(id, hash(line, start, end));
+            }
+            return id;
+        }
+
+        private void insert(int id, int hash) {
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = (long) hash << 32 | (id + 1);
+        }
+
+        private void rehash(int capacity) {
+            slots = new long[capacity];
+            for (int id = 0; id < size; id++) {
+                insert(id, hash(pool, poolStarts[id], poolStarts[id + 1]));
+            }
+        }
+
+        private static int hash(byte[] line, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + line[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,466 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+// Binary snapshot of a RoutingRegion, so a region is parsed from text only
+// once. Loading maps the file read-only: the edges are searched in place as a
+// MappedRoutingGraph, off the heap and shared through the page cache by every
+// process that loads the same region; only names and coordinates are copied.
+// A mapped file cannot be replaced or deleted on Windows until the mapping is
+// garbage collected, so a snapshot is never overwritten. Each one is written
+// under a fresh name, input.<generation>.rgn next to input.txt, and readers
+// take the newest generation; older ones are deleted once nobody maps them.
+// Layout, all values little-endian:
+//   int magic, int version, int nodeCount, int edgeCount, int flags, int nameBytes
+//   int[nodeCount + 1] name offsets, byte[nameBytes] UTF-8 names, padded to 8 bytes
+//   int[nodeCount + 1] offsets, int[edgeCount] targets, int[edgeCount] weights, padded to 8 bytes
+//   double[nodeCount] x, double[nodeCount] y   (only if flags has COORDINATES)
+//   long CRC32 of everything before it
+// Usage: java RegionSnapshot [input.txt]   (writes the next generation and prints its path)
+public class RegionSnapshot {
+
+    private static final int MAGIC = 0x52474E53; // "RGNS"
+    private static final int VERSION = 1;
+    private static final int COORDINATES = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+    // The CRC is computed over mappings of at most this size.
+    private static final long CHECKSUM_CHUNK = 1L << 30;
+    private static final String EXTENSION = ".rgn";
+
+    public static void main(String[] args) throws IOException {
+        Path text = Path.of(args.length > 0 ? args[0] : "input.txt");
+        Path snapshot = write(RegionParser.parse(text, ForkJoinPool.commonPool()), text);
+        deleteOlderGenerations(text, generation(text, snapshot));
+        System.out.println(snapshot);
+    }
+
+    // Loads the newest snapshot of text if it is up to date, otherwise parses the
+    // text and writes the next generation for the next start. The graph is kept
+    // as storage says. The snapshot is only a cache: if it cannot be written,
+    // e.g. in a read-only directory, the parsed region is returned as it is,
+    // for the mapped storage on the heap.
+    static RoutingRegion loadOrParse(Path text, GraphStorage storage) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(text);
+        List<Long> generations = generations(text);
+        for (int i = generations.size() - 1; i >= 0; i--) {
+            Path snapshot = snapshot(text, generations.get(i));
+            try {
+                if (Files.getLastModifiedTime(snapshot).compareTo(modified) >= 0) {
+                    return read(snapshot, storage);
+                }
+            } catch (IOException e) {
+                // corrupt, outdated format or deleted meanwhile, try the one before
+            }
+        }
+        RoutingRegion region = RegionParser.parse(text, ForkJoinPool.commonPool(), storage::builder);
+        Path snapshot;
+        try {
+            snapshot = write(region, text);
+        } catch (IOException e) {
+            System.err.println("Could not write a region snapshot of " + text + ": " + e);
+            return region;
+        }
+        deleteOlderGenerations(text, generation(text, snapshot));
+        if (storage != GraphStorage.MAPPED) {
+            // already parsed into the storage
+            return region;
+        }
+        try {
+            return read(snapshot, storage);
+        } catch (IOException e) {
+            System.err.println("Could not map region snapshot " + snapshot + ": " + e);
+            return region;
+        }
+    }
+
+    // Writes region as the next snapshot generation of text and returns its path.
+    static Path write(RoutingRegion region, Path text) throws IOException {
+        AdjacencyGraph graph = region.graph;
+        long edgeCount = edgeCount(graph);
+        if (edgeCount > Integer.MAX_VALUE) {
+            throw new IOException("Too many edges for a snapshot: " + edgeCount);
+        }
+        byte[][] encodedNames = new byte[region.names.length][];
+        long nameBytes = 0;
+        for (int id = 0; id < encodedNames.length; id++) {
+            encodedNames[id] = region.names[id].getBytes(StandardCharsets.UTF_8);
+            nameBytes += encodedNames[id].length;
+        }
+        if (nameBytes > Integer.MAX_VALUE) {
+            throw new IOException("City names too large for a snapshot: " + nameBytes + " bytes");
+        }
+
+        // A temporary file of its own, so concurrent writers never share one.
+        Path directory = text.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, baseName(text), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                Output out = new Output(channel);
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putInt(graph.nodeCount());
+                out.putInt((int) edgeCount);
+                out.putInt(region.hasCoordinates() ? COORDINATES : 0);
+                out.putInt((int) nameBytes);
+                int nameOffset = 0;
+                out.putInt(nameOffset);
+                for (byte[] name : encodedNames) {
+                    nameOffset += name.length;
+                    out.putInt(nameOffset);
+                }
+                for (byte[] name : encodedNames) {
+                    out.putBytes(name);
+                }
+                out.pad();
+                putEdges(out, graph);
+                out.pad();
+                if (region.hasCoordinates()) {
+                    out.putDoubles(region.x);
+                    out.putDoubles(region.y);
+                }
+                out.finish();
+                channel.force(false);
+            }
+            // createTempFile keeps the file private to its owner, but other processes read snapshots too.
+            if (Files.getFileStore(temporary).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-r--r--"));
+            }
+            return publish(temporary, text);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // The CSR sections of graph; other representations, e.g. a compressed graph,
+    // are written through a cursor without building the arrays.
+    private static void putEdges(Output out, AdjacencyGraph graph) throws IOException {
+        if (graph instanceof RoutingGraph) {
+            RoutingGraph arrays = (RoutingGraph) graph;
+            out.putInts(arrays.offsets);
+            out.putInts(arrays.targets);
+            out.putInts(arrays.weights);
+            return;
+        }
+        AdjacencyGraph.Cursor cursor = graph.cursor();
+        int offset = 0;
+        out.putInt(offset);
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                offset++;
+            }
+            out.putInt(offset);
+        }
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                out.putInt(cursor.target());
+            }
+        }
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                out.putInt(cursor.weight());
+            }
+        }
+    }
+
+    private static long edgeCount(AdjacencyGraph graph) {
+        if (graph instanceof RoutingGraph) {
+            return ((RoutingGraph) graph).edgeCount();
+        }
+        AdjacencyGraph.Cursor cursor = graph.cursor();
+        long edgeCount = 0;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                edgeCount++;
+            }
+        }
+        return edgeCount;
+    }
+
+    // Gives the complete temporary file the next free generation name. A link
+    // fails if the name exists, unlike a rename, so concurrent writers never
+    // replace a snapshot that another process may have mapped.
+    private static Path publish(Path temporary, Path text) throws IOException {
+        while (true) {
+            List<Long> generations = generations(text);
+            long next = generations.isEmpty() ? 1 : generations.get(generations.size() - 1) + 1;
+            Path snapshot = snapshot(text, next);
+            try {
+                try {
+                    Files.createLink(snapshot, temporary);
+                } catch (UnsupportedOperationException e) {
+                    // no hard links, e.g. on FAT; the move fails as well if the name is taken
+                    Files.move(temporary, snapshot);
+                }
+                return snapshot;
+            } catch (FileAlreadyExistsException e) {
+                // another writer took this generation, try the next one
+            }
+        }
+    }
+
+    // Best effort: a snapshot that is still mapped cannot be deleted on Windows,
+    // a later writer tries again.
+    private static void deleteOlderGenerations(Path text, long generation) {
+        try {
+            for (long older : generations(text)) {
+                if (older < generation) {
+                    try {
+                        Files.deleteIfExists(snapshot(text, older));
+                    } catch (IOException e) {
+                        // still in use
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // the directory cannot be listed, keep the old snapshots
+        }
+    }
+
+    // The generations of the snapshots next to text, in ascending order.
+    static List<Long> generations(Path text) throws IOException {
+        String prefix = baseName(text) + '.';
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(text.toAbsolutePath().getParent(),
+                file -> file.getFileName().toString().startsWith(prefix)
+                        && file.getFileName().toString().endsWith(EXTENSION))) {
+            for (Path file : files) {
+                long generation = generation(text, file);
+                if (generation > 0) {
+                    generations.add(generation);
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    // input.<generation>.rgn next to input.txt
+    static Path snapshot(Path text, long generation) {
+        return text.toAbsolutePath().resolveSibling(baseName(text) + '.' + generation + EXTENSION);
+    }
+
+    // The generation in the name of snapshot, -1 if it is not a snapshot of text.
+    private static long generation(Path text, Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        int start = baseName(text).length() + 1;
+        int end = name.length() - EXTENSION.length();
+        if (end <= start) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(start, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String baseName(Path text) {
+        String name = text.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // Maps file read-only, the region's graph is a MappedRoutingGraph over it.
+    static RoutingRegion read(Path file) throws IOException {
+        return read(file, GraphStorage.MAPPED);
+    }
+
+    static RoutingRegion read(Path file, GraphStorage storage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + Long.BYTES) {
+                throw new IOException("Not a region snapshot: " + file);
+            }
+            ByteBuffer header = map(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a region snapshot of version " + VERSION + ": " + file);
+            }
+            int nodeCount = header.getInt();
+            int edgeCount = header.getInt();
+            boolean coordinates = (header.getInt() & COORDINATES) != 0;
+            int nameBytes = header.getInt();
+            if (nodeCount < 0 || edgeCount < 0 || nameBytes < 0
+                    || payloadSize(nodeCount, edgeCount, nameBytes, coordinates) + Long.BYTES != size) {
+                throw new IOException("Truncated region snapshot: " + file);
+            }
+            long payload = size - Long.BYTES;
+            if (map(channel, payload, Long.BYTES).getLong() != checksum(channel, payload)) {
+                throw new IOException("Checksum mismatch in region snapshot: " + file);
+            }
+
+            long position = HEADER_BYTES;
+            IntBuffer nameOffsets = map(channel, position, (long) Integer.BYTES * (nodeCount + 1)).asIntBuffer();
+            position += (long) Integer.BYTES * (nodeCount + 1);
+            ByteBuffer names = map(channel, position, nameBytes);
+            String[] decoded = new String[nodeCount];
+            byte[] name = new byte[64];
+            for (int id = 0; id < nodeCount; id++) {
+                int length = nameOffsets.get(id + 1) - nameOffsets.get(id);
+                if (length > name.length) {
+                    name = new byte[Math.max(length, name.length * 2)];
+                }
+                names.get(nameOffsets.get(id), name, 0, length);
+                decoded[id] = new String(name, 0, length, StandardCharsets.UTF_8);
+            }
+            position = align(position + nameBytes);
+            IntBuffer offsets = map(channel, position, (long) Integer.BYTES * (nodeCount + 1)).asIntBuffer();
+            position += (long) Integer.BYTES * (nodeCount + 1);
+            IntBuffer targets = map(channel, position, (long) Integer.BYTES * edgeCount).asIntBuffer();
+            position += (long) Integer.BYTES * edgeCount;
+            IntBuffer weights = map(channel, position, (long) Integer.BYTES * edgeCount).asIntBuffer();
+            position = align(position + (long) Integer.BYTES * edgeCount);
+            double[] x = null;
+            double[] y = null;
+            if (coordinates) {
+                x = new double[nodeCount];
+                y = new double[nodeCount];
+                map(channel, position, (long) Double.BYTES * nodeCount).asDoubleBuffer().get(x);
+                position += (long) Double.BYTES * nodeCount;
+                map(channel, position, (long) Double.BYTES * nodeCount).asDoubleBuffer().get(y);
+            }
+            // The mappings stay valid after the channel is closed.
+            MappedRoutingGraph graph = new MappedRoutingGraph(offsets, targets, weights);
+            return new RoutingRegion(decoded, storage.adopt(graph), x, y);
+        }
+    }
+
+    // A read-only little-endian mapping of one section; a MappedByteBuffer is
+    // indexed by int, so a single section cannot exceed 2 GB.
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Region snapshot section of " + size + " bytes is too large to map");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long checksum(FileChannel channel, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < length; position += CHECKSUM_CHUNK) {
+            crc.update(map(channel, position, Math.min(CHECKSUM_CHUNK, length - position)));
+        }
+        return crc.getValue();
+    }
+
+    private static long payloadSize(int nodeCount, int edgeCount, long nameBytes, boolean coordinates) {
+        long size = HEADER_BYTES + (long) Integer.BYTES * (nodeCount + 1) + nameBytes;
+        size = align(size);
+        size += (long) Integer.BYTES * (nodeCount + 1) + 2L * Integer.BYTES * edgeCount;
+        size = align(size);
+        if (coordinates) {
+            size += 2L * Double.BYTES * nodeCount;
+        }
+        return size;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    // Sequential writer; every flushed byte goes into the CRC.
+    private static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+        private long position;
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void putInt(int value) throws IOException {
+            require(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        private void putInts(int[] values) throws IOException {
+            for (int done = 0; done < values.length; ) {
+                require(Integer.BYTES);
+                int count = Math.min(values.length - done, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, done, count);
+                buffer.position(buffer.position() + Integer.BYTES * count);
+                done += count;
+            }
+            position += (long) Integer.BYTES * values.length;
+        }
+
+        private void putDoubles(double[] values) throws IOException {
+            for (int done = 0; done < values.length; ) {
+                require(Double.BYTES);
+                int count = Math.min(values.length - done, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(values, done, count);
+                buffer.position(buffer.position() + Double.BYTES * count);
+                done += count;
+            }
+            position += (long) Double.BYTES * values.length;
+        }
+
+        private void putBytes(byte[] values) throws IOException {
+            for (int done = 0; done < values.length; ) {
+                require(1);
+                int count = Math.min(values.length - done, buffer.remaining());
+                buffer.put(values, done, count);
+                done += count;
+            }
+            position += values.length;
+        }
+
+        private void pad() throws IOException {
+            while (position % 8 != 0) {
+                require(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        // Flushes everything and appends the CRC of it.
+        private void finish() throws IOException {
+            flush();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Bounded cache of routes for a skewed query mix, keyed by (source, target,
+// graph version). Besides single paths it keeps complete shortest-path trees
+// of the sources that missed most often: once a source has a tree, every
+// target is answered from it without a search. Both are evicted least
+// recently used first and, with a time to live, expire after it.
+// All entries belong to one graph version: a lookup with a newer version
+// drops everything, one with an older version (a query still running on an
+// outdated snapshot) misses and does not store anything.
+// Thread-safe; the lock only guards map updates, paths are walked outside it.
+final class RouteCache {
+
+    // A source gets a tree after this many misses within one graph version.
+    static final int TREE_AFTER_MISSES = 4;
+
+    private final int maxPaths;
+    private final int maxTrees;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<Long, Entry<int[]>> paths;
+    private final LinkedHashMap<Integer, Entry<int[]>> trees;
+    private final LinkedHashMap<Integer, Integer> sourceMisses;
+    private long version;
+
+    private long hits;
+    private long treeHits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    // ttlNanos <= 0 disables expiry.
+    RouteCache(int maxPaths, int maxTrees, long ttlNanos) {
+        this.maxPaths = maxPaths;
+        this.maxTrees = maxTrees;
+        this.ttlNanos = ttlNanos;
+        paths = lru(maxPaths, true);
+        trees = lru(maxTrees, true);
+        sourceMisses = lru(maxPaths, false);
+    }
+
+    private <K, V> LinkedHashMap<K, V> lru(int capacity, boolean countEvictions) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > capacity) {
+                    evictions += countEvictions ? 1 : 0;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // The cached path, empty if target is unreachable, or null on a miss.
+    // Cached arrays are shared and must not be modified.
+    int[] get(long graphVersion, int source, int target) {
+        int[] parents;
+        synchronized (this) {
+            if (!currentVersion(graphVersion)) {
+                misses++;
+                return null;
+            }
+            long now = System.nanoTime();
+            int[] path = live(paths, key(source, target), now);
+            if (path != null) {
+                hits++;
+                return path;
+            }
+            parents = live(trees, source, now);
+            if (parents == null) {
+                misses++;
+                sourceMisses.merge(source, 1, Integer::sum);
+                return null;
+            }
+            treeHits++;
+        }
+        return QueryWorkspace.path(parents, source, target);
+    }
+
+    // Whether the caller should compute the complete tree of source instead of a single path.
+    synchronized boolean wantsTree(long graphVersion, int source) {
+        return maxTrees > 0 && currentVersion(graphVersion) && !trees.containsKey(source)
+                && sourceMisses.getOrDefault(source, 0) >= TREE_AFTER_MISSES;
+    }
+
+    synchronized void put(long graphVersion, int source, int target, int[] path) {
+        if (maxPaths > 0 && currentVersion(graphVersion)) {
+            paths.put(key(source, target), new Entry<>(path, System.nanoTime()));
+        }
+    }
+
+    // parents[v] is the predecessor of v on a shortest path from source,
+    // QueryWorkspace.NO_PREDECESSOR if v is unreachable. Not copied.
+    synchronized void putTree(long graphVersion, int source, int[] parents) {
+        if (maxTrees > 0 && currentVersion(graphVersion)) {
+            trees.put(source, new Entry<>(parents, System.nanoTime()));
+            sourceMisses.remove(source);
+        }
+    }
+
+    synchronized void clear() {
+        paths.clear();
+        trees.clear();
+        sourceMisses.clear();
+    }
+
+    synchronized Statistics statistics() {
+        return new Statistics(hits, treeHits, misses, evictions, expirations, invalidations, paths.size(), trees.size());
+    }
+
+    // Moves the cache to a newer version; false for an outdated one.
+    private boolean currentVersion(long graphVersion) {
+        if (graphVersion > version) {
+            version = graphVersion;
+            if (!paths.isEmpty() || !trees.isEmpty()) {
+                invalidations++;
+            }
+            clear();
+        }
+        return graphVersion == version;
+    }
+
+    private <K> int[] live(LinkedHashMap<K, Entry<int[]>> map, K key, long now) {
+        Entry<int[]> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (ttlNanos > 0 && now - entry.created > ttlNanos) {
+            map.remove(key);
+            expirations++;
+            return null;
+        }
+        return entry.value;
+    }
+
+    private static long key(int source, int target) {
+        return (long) source << 32 | (target & 0xFFFFFFFFL);
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long created;
+
+        private Entry(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+
+    static final class Statistics {
+
+        final long hits;
+        final long treeHits;
+        final long misses;
+        final long evictions;
+        final long expirations;
+        final long invalidations;
+        final int paths;
+        final int trees;
+
+        private Statistics(long hits, long treeHits, long misses, long evictions, long expirations,
+                           long invalidations, int paths, int trees) {
+            this.hits = hits;
+            this.treeHits = treeHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+            this.paths = paths;
+            this.trees = trees;
+        }
+
+        double hitRate() {
+            long lookups = hits + treeHits + misses;
+            return lookups == 0 ? 0 : (double) (hits + treeHits) / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " treeHits=" + treeHits + " misses=" + misses
+                    + " hitRate=" + String.format(Locale.ROOT, "%.3f", hitRate()) + " evictions=" + evictions
+                    + " expirations=" + expirations + " invalidations=" + invalidations
+                    + " paths=" + paths + " trees=" + trees;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Locale;
+import java.util.StringJoiner;
+
+// The point-to-point algorithms a Navigation can be run with, e.g.
+// "java Navigation bidirectional". All of them return the same paths, they
+// differ in how many nodes they settle per query.
+enum RoutingAlgorithm {
+
+    DIJKSTRA {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            return new DijkstraEngine(graph);
+        }
+    },
+    // Dijkstra on integer buckets, Dial's or a radix heap depending on the longest street.
+    BUCKET {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            return new BucketDijkstraEngine(graph);
+        }
+    },
+    // Dijkstra on a CompressedRoutingGraph: fewer bytes per edge to read during
+    // the search. Packed from the CSR graph here, which Navigation drops right
+    // after; batch runs with -Dnavigation.graph=compressed never build one.
+    COMPRESSED {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            return new DijkstraEngine(CompressedRoutingGraph.compress(graph));
+        }
+    },
+    // Dijkstra on an OffHeapRoutingGraph copy, which Navigation leaves as the only
+    // one; batch runs with -Dnavigation.graph=off-heap parse straight into one.
+    // Needs Java 22, see GraphStorage.offHeap.
+    OFF_HEAP {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            return new DijkstraEngine(GraphStorage.offHeap().copyOf(graph));
+        }
+    },
+    // Falls back to Dijkstra if there is no heuristic, e.g. cities without coordinates.
+    ASTAR {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            DijkstraEngine engine = new DijkstraEngine(graph);
+            return heuristic == null ? engine : new AStarEngine(engine, heuristic);
+        }
+    },
+    BIDIRECTIONAL {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            return new BidirectionalDijkstraEngine(graph);
+        }
+    },
+    // A* with landmark lower bounds, works without coordinates.
+    ALT {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            LandmarkHeuristic landmarks = LandmarkHeuristic.select(graph, LandmarkHeuristic.DEFAULT_LANDMARK_COUNT);
+            return new AStarEngine(new DijkstraEngine(graph), landmarks);
+        }
+    },
+    // Contracts the graph first, which only pays off if it answers many queries.
+    CONTRACTION_HIERARCHY {
+        @Override
+        RoutingEngine create(RoutingGraph graph, Heuristic heuristic) {
+            return new ContractionHierarchyEngine(ContractionHierarchy.build(graph));
+        }
+    };
+
+    abstract RoutingEngine create(RoutingGraph graph, Heuristic heuristic);
+
+    // The algorithm for a name like "contraction-hierarchy", case-insensitive.
+    static RoutingAlgorithm byName(String name) {
+        String key = name.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        for (RoutingAlgorithm algorithm : values()) {
+            if (algorithm.name().equals(key)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown algorithm " + name + ", expected one of " + names());
+    }
+
+    // "dijkstra, bucket, ...", the names byName accepts.
+    static String names() {
+        StringJoiner names = new StringJoiner(", ");
+        for (RoutingAlgorithm algorithm : values()) {
+            names.add(algorithm.displayName());
+        }
+        return names.toString();
+    }
+
+    String displayName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
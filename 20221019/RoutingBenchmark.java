@@ -0,0 +1,80 @@
+import java.util.Random;
+
+// Compares the RoutingAlgorithms on a synthetic grid region with random street
+// lengths: preprocessing time, average settled nodes and time per random
+// point-to-point query.
+// Every path is checked against plain Dijkstra.
+// Usage: java RoutingBenchmark [gridSide] [queries] [seed]
+public class RoutingBenchmark {
+
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        new RoutingBenchmark().run(side, queries, seed);
+    }
+
+    private void run(int side, int queries, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[side * side];
+        double[] y = new double[side * side];
+        RoutingGraph graph = buildGrid(side, random, x, y);
+        Heuristic heuristic = new EuclideanHeuristic(graph, x, y);
+        System.out.println(graph);
+
+        int[] sources = new int[queries];
+        int[] targets = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            sources[i] = random.nextInt(graph.nodeCount);
+            targets[i] = random.nextInt(graph.nodeCount);
+        }
+        long[] expected = new long[queries];
+        DijkstraEngine reference = new DijkstraEngine(graph);
+        for (int i = 0; i < queries; i++) {
+            expected[i] = reference.run(sources[i], targets[i]);
+        }
+
+        System.out.printf("%-22s %10s %14s %12s%n", "algorithm", "setup ms", "avg settled", "avg us");
+        for (RoutingAlgorithm algorithm : RoutingAlgorithm.values()) {
+            long setupStart = System.nanoTime();
+            RoutingEngine engine = algorithm.create(graph, heuristic);
+            long setupMillis = (System.nanoTime() - setupStart) / 1_000_000;
+            // warm-up, so the JIT has compiled the search loop
+            for (int i = 0; i < Math.min(queries, 20); i++) {
+                engine.route(sources[i], targets[i]);
+            }
+            long settled = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                int[] path = engine.route(sources[i], targets[i]);
+                settled += engine.settledNodes();
+                long length = path.length == 0 ? DijkstraEngine.INFINITY : graph.pathLength(path);
+                if (length != expected[i]) {
+                    throw new IllegalStateException(algorithm + " returned a wrong path from "
+                            + sources[i] + " to " + targets[i]);
+                }
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+            System.out.printf("%-22s %10d %14d %12d%n", algorithm, setupMillis, settled / queries, micros / queries);
+        }
+    }
+
+    // side x side grid, street lengths between 100 and 199 per unit of distance
+    private RoutingGraph buildGrid(int side, Random random, double[] x, double[] y) {
+        RoutingGraph.Builder builder = new RoutingGraph.Builder(side * side);
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                x[node] = column;
+                y[node] = row;
+                if (column + 1 < side) {
+                    builder.addStreet(node, node + 1, 100 + random.nextInt(100));
+                }
+                if (row + 1 < side) {
+                    builder.addStreet(node, node + side, 100 + random.nextInt(100));
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,10 @@
+// Answers point-to-point shortest-path queries on a RoutingGraph.
+// Engines keep per-query scratch state and are not thread-safe.
+interface RoutingEngine {
+
+    // Node ids of a shortest path from source to target, empty if target is unreachable.
+    int[] route(int source, int target);
+
+    // Number of nodes removed from the heap(s) by the last route query.
+    int settledNodes();
+}
@@ -0,0 +1,250 @@
+import java.util.Arrays;
+
+// Immutable compressed-sparse-row (CSR) representation of a street network.
+// Nodes are dense int ids in [0, nodeCount). The outgoing edges of node v are
+// stored at targets[offsets[v]] .. targets[offsets[v + 1] - 1], the matching
+// street lengths at the same positions in weights.
+final class RoutingGraph implements AdjacencyGraph {
+
+    final int nodeCount;
+    final int[] offsets;
+    final int[] targets;
+    final int[] weights;
+    // Longest street, 0 without streets. Decides which MonotoneQueue a search uses.
+    final int maxWeight;
+
+    private RoutingGraph(int nodeCount, int[] offsets, int[] targets, int[] weights) {
+        this.nodeCount = nodeCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        int max = 0;
+        for (int weight : weights) {
+            max = Math.max(max, weight);
+        }
+        maxWeight = max;
+    }
+
+    // Wraps existing CSR arrays, e.g. loaded from a RegionSnapshot. The arrays are not copied.
+    static RoutingGraph of(int[] offsets, int[] targets, int[] weights) {
+        if (offsets.length == 0 || targets.length != weights.length || offsets[offsets.length - 1] != targets.length) {
+            throw new IllegalArgumentException("Inconsistent CSR arrays");
+        }
+        return new RoutingGraph(offsets.length - 1, offsets, targets, weights);
+    }
+
+    // CSR arrays on the heap with the edges of graph, e.g. for preprocessing that
+    // needs them; graph itself if it already is a RoutingGraph.
+    static RoutingGraph copyOf(AdjacencyGraph graph) {
+        if (graph instanceof RoutingGraph) {
+            return (RoutingGraph) graph;
+        }
+        int nodeCount = graph.nodeCount();
+        int[] offsets = new int[nodeCount + 1];
+        Cursor cursor = graph.cursor();
+        long edgeCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                edgeCount++;
+            }
+            if (edgeCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(graph + " has too many edges for a RoutingGraph");
+            }
+            offsets[node + 1] = (int) edgeCount;
+        }
+        int[] targets = new int[(int) edgeCount];
+        int[] weights = new int[(int) edgeCount];
+        int edge = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                targets[edge] = cursor.target();
+                weights[edge] = cursor.weight();
+                edge++;
+            }
+        }
+        return new RoutingGraph(nodeCount, offsets, targets, weights);
+    }
+
+    // Same streets with other lengths, weights is indexed like this.weights. The
+    // topology arrays are shared, so only the weights cost memory.
+    RoutingGraph withWeights(int[] weights) {
+        if (weights.length != targets.length) {
+            throw new IllegalArgumentException(weights.length + " weights for " + targets.length + " edges");
+        }
+        return new RoutingGraph(nodeCount, offsets, targets, weights);
+    }
+
+    int edgeCount() {
+        return targets.length;
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new Cursor() {
+            private int edge;
+            private int end;
+
+            @Override
+            public void moveTo(int node) {
+                edge = offsets[node] - 1;
+                end = offsets[node + 1];
+            }
+
+            @Override
+            public boolean next() {
+                return ++edge < end;
+            }
+
+            @Override
+            public int target() {
+                return targets[edge];
+            }
+
+            @Override
+            public int weight() {
+                return weights[edge];
+            }
+        };
+    }
+
+    @Override
+    public long memoryBytes() {
+        return (long) Integer.BYTES * (offsets.length + targets.length + weights.length);
+    }
+
+    int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    // Length of the shortest edge from -> to, or -1 if the nodes are not adjacent.
+    int edgeLength(int from, int to) {
+        int length = -1;
+        for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+            if (targets[edge] == to && (length == -1 || weights[edge] < length)) {
+                length = weights[edge];
+            }
+        }
+        return length;
+    }
+
+    // Sum of the edge lengths along path, or -1 if two consecutive nodes are not adjacent.
+    long pathLength(int[] path) {
+        long length = 0;
+        for (int i = 1; i < path.length; i++) {
+            int edgeLength = edgeLength(path[i - 1], path[i]);
+            if (edgeLength == -1) {
+                return -1;
+            }
+            length += edgeLength;
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingGraph{" + "nodes=" + nodeCount + ", edges=" + edgeCount() + '}';
+    }
+
+    static final class Builder implements GraphBuilder {
+
+        private final int nodeCount;
+        private int[] from;
+        private int[] to;
+        private int[] length;
+        private int size;
+
+        Builder(int nodeCount) {
+            this(nodeCount, 16);
+        }
+
+        Builder(int nodeCount, int edgeCapacity) {
+            this.nodeCount = nodeCount;
+            int capacity = Math.max(edgeCapacity, 16);
+            from = new int[capacity];
+            to = new int[capacity];
+            length = new int[capacity];
+        }
+
+        // Streets are bidirectional, thus every street becomes one edge per direction.
+        @Override
+        public Builder addStreet(int from, int to, int length) {
+            addEdge(from, to, length);
+            addEdge(to, from, length);
+            return this;
+        }
+
+        @Override
+        public Builder addEdge(int from, int to, int length) {
+            if (from < 0 || from >= nodeCount || to < 0 || to >= nodeCount) {
+                throw new IllegalArgumentException("Edge " + from + " -> " + to + " outside of [0, " + nodeCount + ")");
+            }
+            if (size == this.from.length) {
+                int capacity = size * 2;
+                this.from = Arrays.copyOf(this.from, capacity);
+                this.to = Arrays.copyOf(this.to, capacity);
+                this.length = Arrays.copyOf(this.length, capacity);
+            }
+            this.from[size] = from;
+            this.to[size] = to;
+            this.length[size] = length;
+            size++;
+            return this;
+        }
+
+        // Appends all edges of other, e.g. one that was filled by another thread.
+        @Override
+        public Builder addAll(Builder other) {
+            if (other.nodeCount > nodeCount) {
+                throw new IllegalArgumentException("Builder for " + other.nodeCount + " nodes cannot be merged into "
+                        + nodeCount + " nodes");
+            }
+            int required = size + other.size;
+            if (required > from.length) {
+                int capacity = Math.max(required, from.length * 2);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                length = Arrays.copyOf(length, capacity);
+            }
+            System.arraycopy(other.from, 0, from, size, other.size);
+            System.arraycopy(other.to, 0, to, size, other.size);
+            System.arraycopy(other.length, 0, length, size, other.size);
+            size = required;
+            return this;
+        }
+
+        // Adds the edges to target in the order they were added here.
+        void copyTo(GraphBuilder target) {
+            for (int i = 0; i < size; i++) {
+                target.addEdge(from[i], to[i], length[i]);
+            }
+        }
+
+        @Override
+        public RoutingGraph build() {
+            // Counting sort of the edges by their source node.
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int v = 0; v < nodeCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            int[] targets = new int[size];
+            int[] weights = new int[size];
+            for (int i = 0; i < size; i++) {
+                int slot = next[from[i]]++;
+                targets[slot] = to[i];
+                weights[slot] = length[i];
+            }
+            return new RoutingGraph(nodeCount, offsets, targets, weights);
+        }
+    }
+}
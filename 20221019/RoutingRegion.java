@@ -0,0 +1,89 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// Primitive form of a region: city names by dense id and the street network
+// as an AdjacencyGraph (CSR arrays on the heap or a mapped RegionSnapshot),
+// without City or Street objects. Coordinates are only present if every city
+// line had them, otherwise x and y are null.
+final class RoutingRegion {
+
+    static final int UNKNOWN_CITY = -1;
+
+    final String[] names;
+    final AdjacencyGraph graph;
+    final double[] x;
+    final double[] y;
+    private final Map<String, Integer> idsByName;
+
+    RoutingRegion(String[] names, AdjacencyGraph graph, double[] x, double[] y) {
+        this(names, graph, x, y, new HashMap<>(names.length * 2));
+        for (int id = 0; id < names.length; id++) {
+            idsByName.put(names[id], id);
+        }
+    }
+
+    private RoutingRegion(String[] names, AdjacencyGraph graph, double[] x, double[] y,
+                          Map<String, Integer> idsByName) {
+        if (names.length != graph.nodeCount()) {
+            throw new IllegalArgumentException(names.length + " names for " + graph.nodeCount() + " nodes");
+        }
+        this.names = names;
+        this.graph = graph;
+        this.x = x;
+        this.y = y;
+        this.idsByName = idsByName;
+    }
+
+    // The same cities with the same streets in another representation.
+    RoutingRegion withGraph(AdjacencyGraph graph) {
+        return new RoutingRegion(names, graph, x, y, idsByName);
+    }
+
+    // The graph as CSR arrays, which preprocessing like a ContractionHierarchy
+    // needs; copied unless it already is a RoutingGraph, see onHeap.
+    RoutingGraph routingGraph() {
+        return RoutingGraph.copyOf(graph);
+    }
+
+    // The same region with its graph as CSR arrays, this if it already is.
+    RoutingRegion onHeap() {
+        return graph instanceof RoutingGraph ? this : withGraph(routingGraph());
+    }
+
+    int cityId(String name) {
+        return idsByName.getOrDefault(name, UNKNOWN_CITY);
+    }
+
+    boolean hasCoordinates() {
+        return x != null;
+    }
+
+    // The region's cities as a heuristic for A*, null without coordinates.
+    Heuristic heuristic() {
+        return hasCoordinates() ? new EuclideanHeuristic(graph, x, y) : null;
+    }
+
+    // The same region with its cities renumbered; names, coordinates and the
+    // graph are permuted together, so paths are described with the right names.
+    // The renumbered graph is always on the heap.
+    RoutingRegion reordered(NodeOrder order) {
+        return new RoutingRegion(order.apply(names), order.apply(routingGraph()), order.apply(x), order.apply(y));
+    }
+
+    // Same format as Navigation prints a List<City>, e.g. "[n0, n2, n1]".
+    String describePath(int[] path) {
+        StringBuilder description = new StringBuilder("[");
+        for (int i = 0; i < path.length; i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(names[path[i]]);
+        }
+        return description.append(']').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingRegion{" + "cities=" + names.length + ", graph=" + graph + '}';
+    }
+}
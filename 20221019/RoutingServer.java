@@ -0,0 +1,254 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Long running routing service: the region is loaded once and route may be
+// called from any number of threads at the same time. Queries only read the
+// current LiveRoutingGraph snapshot; the mutable scratch state (workspaces and
+// the engines on top of them) is taken from a lock-free pool per call and put
+// back afterwards. Unlike a ThreadLocal, the pool does not allocate a
+// workspace per thread, so short lived or virtual threads are cheap as well.
+//
+// Line protocol, one answer line per request line:
+//   "from to"                 -> the path, e.g. "[n0, n2, n1]", "[]" if unreachable
+//   "update from to length"   -> "OK <graph version>"
+//   "stats"                   -> the RouteCache statistics
+//   "quit"                    -> closes the connection
+// Anything else, e.g. an unknown city, is answered with "ERROR".
+// Usage: java RoutingServer [dijkstra|alt|contraction-hierarchy] [port] [cachedPaths]
+// Without a port (or with "-") it serves stdin/stdout, with one it listens on
+// localhost. cachedPaths 0 disables the route cache. The region is loaded like
+// Navigation does, from -Dnavigation.input (input.txt) through its snapshot.
+public class RoutingServer {
+
+    private static final String USAGE = "Usage: java RoutingServer [dijkstra|alt|contraction-hierarchy] [port] [cachedPaths]";
+
+    private static final int DEFAULT_CACHED_PATHS = 100_000;
+    // A tree costs one int per city.
+    private static final int DEFAULT_CACHED_TREES = 16;
+
+    private final RoutingRegion region;
+    private final LiveRoutingGraph live;
+    private final ConcurrentLinkedQueue<Scratch> idle = new ConcurrentLinkedQueue<>();
+    // null without caching
+    private final RouteCache cache;
+
+    RoutingServer(RoutingRegion region, RoutingAlgorithm algorithm, RouteCache cache) {
+        this.region = region;
+        this.cache = cache;
+        RoutingGraph graph = region.routingGraph();
+        switch (algorithm) {
+            case DIJKSTRA:
+                live = new LiveRoutingGraph(graph, null, null);
+                break;
+            case ALT:
+                live = new LiveRoutingGraph(graph,
+                        LandmarkHeuristic.select(graph, LandmarkHeuristic.DEFAULT_LANDMARK_COUNT), null);
+                break;
+            case CONTRACTION_HIERARCHY:
+                live = new LiveRoutingGraph(graph, null, ContractionHierarchy.build(graph));
+                break;
+            default:
+                // Euclidean bounds and the bidirectional engine are not kept up to date with live updates.
+                throw new IllegalArgumentException(algorithm.displayName() + " is not supported by the server");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        RoutingServer server;
+        int port;
+        try {
+            RoutingAlgorithm algorithm = args.length > 0 ? RoutingAlgorithm.byName(args[0]) : RoutingAlgorithm.DIJKSTRA;
+            port = args.length > 1 && !"-".equals(args[1]) ? Integer.parseInt(args[1]) : -1;
+            int cachedPaths = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CACHED_PATHS;
+            RouteCache cache = cachedPaths > 0 ? new RouteCache(cachedPaths, DEFAULT_CACHED_TREES, 0) : null;
+            server = new RoutingServer(Navigation.loadRegion(), algorithm, cache);
+        } catch (IllegalArgumentException e) {
+            // unknown or unsupported algorithm, a port that is no number, or a bad -Dnavigation.* option
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (port >= 0) {
+            server.listen(port);
+        } else {
+            server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                    new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+    }
+
+    LiveRoutingGraph live() {
+        return live;
+    }
+
+    // Shortest path between two city ids on the current snapshot, empty if unreachable.
+    // The returned array may be shared with the cache and must not be modified.
+    int[] route(int source, int target) {
+        LiveRoutingGraph.Snapshot snapshot = live.snapshot();
+        if (source < 0 || source >= snapshot.graph.nodeCount || target < 0 || target >= snapshot.graph.nodeCount) {
+            throw new IllegalArgumentException("No city " + source + " or " + target);
+        }
+        if (cache != null) {
+            int[] cached = cache.get(snapshot.version, source, target);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Scratch scratch = idle.poll();
+        if (scratch == null) {
+            scratch = new Scratch(snapshot);
+        }
+        try {
+            if (cache == null) {
+                return scratch.engineFor(snapshot).route(source, target);
+            }
+            if (cache.wantsTree(snapshot.version, source)) {
+                int[] parents = scratch.tree(snapshot, source);
+                cache.putTree(snapshot.version, source, parents);
+                return QueryWorkspace.path(parents, source, target);
+            }
+            int[] path = scratch.engineFor(snapshot).route(source, target);
+            cache.put(snapshot.version, source, target, path);
+            return path;
+        } finally {
+            idle.offer(scratch);
+        }
+    }
+
+    // null without caching
+    RouteCache.Statistics cacheStatistics() {
+        return cache == null ? null : cache.statistics();
+    }
+
+    // One protocol line to its answer.
+    String handle(String line) {
+        String[] split = line.trim().split(" +");
+        if (split.length == 2) {
+            int from = region.cityId(split[0]);
+            int to = region.cityId(split[1]);
+            if (from == RoutingRegion.UNKNOWN_CITY || to == RoutingRegion.UNKNOWN_CITY) {
+                return "ERROR";
+            }
+            return region.describePath(route(from, to));
+        }
+        if (split.length == 1 && "stats".equals(split[0])) {
+            return cache == null ? "ERROR" : cache.statistics().toString();
+        }
+        if (split.length == 4 && "update".equals(split[0])) {
+            int from = region.cityId(split[1]);
+            int to = region.cityId(split[2]);
+            try {
+                StreetUpdates updates = new StreetUpdates().add(from, to, Integer.parseInt(split[3]));
+                return "OK " + live.apply(updates).version;
+            } catch (IllegalArgumentException e) {
+                return "ERROR";
+            }
+        }
+        return "ERROR";
+    }
+
+    void serve(BufferedReader in, Writer out) throws IOException {
+        PrintWriter writer = new PrintWriter(out);
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if ("quit".equals(line.trim())) {
+                break;
+            }
+            writer.println(handle(line));
+            writer.flush();
+        }
+        writer.flush();
+    }
+
+    // One thread per connection, all of them share this server.
+    void listen(int port) throws IOException {
+        ExecutorService connections = Executors.newCachedThreadPool();
+        try (ServerSocket serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> {
+                    try (socket) {
+                        serve(new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)),
+                                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        // the client went away, nothing to answer
+                    }
+                });
+            }
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    // Per call scratch state. The engines are created once on the first snapshot
+    // and rebound to a newer one when it was published since this scratch was
+    // used last, so an update costs no per-node allocation.
+    private static final class Scratch {
+
+        private final QueryWorkspace forward;
+        private final QueryWorkspace backward;
+        private final DijkstraEngine dijkstra;
+        // created with the first snapshot that has a hierarchy
+        private ContractionHierarchyEngine hierarchyEngine;
+        private LiveRoutingGraph.Snapshot snapshot;
+        private RoutingEngine engine;
+
+        private Scratch(LiveRoutingGraph.Snapshot initial) {
+            forward = new QueryWorkspace(initial.graph.nodeCount);
+            backward = new QueryWorkspace(initial.graph.nodeCount);
+            dijkstra = new DijkstraEngine(initial.graph, forward);
+        }
+
+        // Parents of all nodes on their shortest paths from source, NO_PREDECESSOR if unreachable.
+        private int[] tree(LiveRoutingGraph.Snapshot current, int source) {
+            DijkstraEngine dijkstra = dijkstraFor(current);
+            dijkstra.run(source);
+            int[] parents = new int[current.graph.nodeCount];
+            for (int node = 0; node < parents.length; node++) {
+                parents[node] = node == source || dijkstra.distance(node) == QueryWorkspace.INFINITY
+                        ? QueryWorkspace.NO_PREDECESSOR : dijkstra.predecessor(node);
+            }
+            return parents;
+        }
+
+        private RoutingEngine engineFor(LiveRoutingGraph.Snapshot current) {
+            if (current != snapshot) {
+                snapshot = current;
+                if (current.hierarchy != null) {
+                    if (hierarchyEngine == null) {
+                        hierarchyEngine = new ContractionHierarchyEngine(current.hierarchy, forward, backward);
+                    } else {
+                        hierarchyEngine.rebind(current.hierarchy);
+                    }
+                    engine = hierarchyEngine;
+                } else if (current.landmarks != null) {
+                    engine = new AStarEngine(dijkstraFor(current), current.landmarks);
+                } else {
+                    engine = dijkstraFor(current);
+                }
+            }
+            return engine;
+        }
+
+        private DijkstraEngine dijkstraFor(LiveRoutingGraph.Snapshot current) {
+            if (dijkstra.graph() != current.graph) {
+                dijkstra.rebind(current.graph);
+            }
+            return dijkstra;
+        }
+    }
+}
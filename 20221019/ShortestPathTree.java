@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Result of a bounded one-to-all query: every node within budget of source
+// (an isochrone), with its distance and its predecessor on a shortest path,
+// in order of distance. Three primitive arrays of the same length, nothing
+// per node; with budget INFINITY it is the complete shortest-path tree.
+final class ShortestPathTree {
+
+    // a distance of up to 19 digits and the three separators of a line
+    private static final int MAX_LINE_DIGITS = 22;
+    // a surrogate pair, two chars, takes four bytes
+    private static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+
+    final int source;
+    final long budget;
+    // nodes[i] is at distances[i] from source, predecessors[i] is the node
+    // before it on a shortest path; the source has itself as predecessor.
+    final int[] nodes;
+    final long[] distances;
+    final int[] predecessors;
+
+    private ShortestPathTree(int source, long budget, int[] nodes, long[] distances, int[] predecessors) {
+        this.source = source;
+        this.budget = budget;
+        this.nodes = nodes;
+        this.distances = distances;
+        this.predecessors = predecessors;
+    }
+
+    static ShortestPathTree compute(DijkstraEngine engine, int source, long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Negative budget " + budget);
+        }
+        int size = engine.runWithin(source, budget);
+        int[] nodes = new int[size];
+        long[] distances = new long[size];
+        int[] predecessors = new int[size];
+        for (int i = 0; i < size; i++) {
+            int node = engine.settled(i);
+            nodes[i] = node;
+            distances[i] = engine.distance(node);
+            predecessors[i] = engine.predecessor(node);
+        }
+        return new ShortestPathTree(source, budget, nodes, distances, predecessors);
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    // The tree as one dense array over all nodeCount nodes: predecessors by node
+    // id, NO_PREDECESSOR for nodes beyond the budget.
+    int[] parents(int nodeCount) {
+        int[] parents = new int[nodeCount];
+        Arrays.fill(parents, QueryWorkspace.NO_PREDECESSOR);
+        for (int i = 0; i < nodes.length; i++) {
+            parents[nodes[i]] = predecessors[i];
+        }
+        return parents;
+    }
+
+    // Streams "city distance predecessor" lines, one per node in order of
+    // distance, straight from the arrays into a byte buffer. Names are encoded
+    // to UTF-8 right into the buffer as their line is written and distances
+    // digit by digit, so there is no garbage per line or per node.
+    void write(String[] names, OutputStream out) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        int size = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            String name = names[nodes[i]];
+            String predecessor = names[predecessors[i]];
+            int longestLine = MAX_UTF8_BYTES_PER_CHAR * (name.length() + predecessor.length()) + MAX_LINE_DIGITS;
+            if (size + longestLine > buffer.length) {
+                out.write(buffer, 0, size);
+                size = 0;
+                if (longestLine > buffer.length) {
+                    buffer = new byte[longestLine];
+                }
+            }
+            size = appendUtf8(buffer, size, name, (byte) ' ');
+            size = appendDigits(buffer, size, distances[i], (byte) ' ');
+            size = appendUtf8(buffer, size, predecessor, (byte) '\n');
+        }
+        out.write(buffer, 0, size);
+        out.flush();
+    }
+
+    void write(String[] names, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(names, out);
+        }
+    }
+
+    private static int appendDigits(byte[] buffer, int size, long value, byte separator) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+        buffer[size++] = separator;
+        return size;
+    }
+
+    // UTF-8 of text, like String.getBytes: an unpaired surrogate becomes '?'.
+    private static int appendUtf8(byte[] buffer, int size, String text, byte separator) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | c >> 6);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[size++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[size++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                buffer[size++] = '?';
+            } else {
+                buffer[size++] = (byte) (0xE0 | c >> 12);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        buffer[size++] = separator;
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestPathTree{" + "source=" + source + ", budget=" + budget + ", nodes=" + nodes.length + '}';
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.Arrays;
+
+// A batch of new street lengths, e.g. from live traffic. Each entry sets the
+// length of every edge between from and to, in both directions. Batches are
+// applied as a whole by LiveRoutingGraph, so larger batches amortize the
+// copy of the weight array.
+final class StreetUpdates {
+
+    private int[] from = new int[16];
+    private int[] to = new int[16];
+    private int[] length = new int[16];
+    private int size;
+
+    StreetUpdates add(int from, int to, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative street length " + length);
+        }
+        if (size == this.from.length) {
+            int capacity = size * 2;
+            this.from = Arrays.copyOf(this.from, capacity);
+            this.to = Arrays.copyOf(this.to, capacity);
+            this.length = Arrays.copyOf(this.length, capacity);
+        }
+        this.from[size] = from;
+        this.to[size] = to;
+        this.length[size] = length;
+        size++;
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int from(int index) {
+        return from[index];
+    }
+
+    int to(int index) {
+        return to[index];
+    }
+
+    int length(int index) {
+        return length[index];
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Synthetic street networks for the benchmarks, built straight into a
+// RoutingGraph. RegionGenerator writes region files instead.
+final class SyntheticGraphs {
+
+    private SyntheticGraphs() {
+    }
+
+    // Streets of a side x side grid, side = sqrt(nodes), lengths between 100 and 199.
+    static RoutingGraph grid(int nodes, Random random) {
+        int side = Math.max(1, (int) Math.round(Math.sqrt(nodes)));
+        RoutingGraph.Builder builder = new RoutingGraph.Builder(side * side, 4 * side * side);
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                if (column + 1 < side) {
+                    builder.addStreet(node, node + 1, 100 + random.nextInt(100));
+                }
+                if (row + 1 < side) {
+                    builder.addStreet(node, node + side, 100 + random.nextInt(100));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // Random geometric graph: uniform points in the unit square, every pair
+    // closer than the radius is a street (about 6 per node), the length is the
+    // distance. Cells of the radius' size keep the neighbor search linear.
+    static RoutingGraph geometric(int nodes, Random random) {
+        double radius = Math.sqrt(6.0 / (Math.PI * nodes));
+        int cells = Math.max(1, (int) (1 / radius));
+        double[] x = new double[nodes];
+        double[] y = new double[nodes];
+        int[] cellStart = new int[cells * cells + 1];
+        int[] cellOf = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            x[node] = random.nextDouble();
+            y[node] = random.nextDouble();
+            int row = Math.min((int) (y[node] * cells), cells - 1);
+            cellOf[node] = row * cells + Math.min((int) (x[node] * cells), cells - 1);
+            cellStart[cellOf[node] + 1]++;
+        }
+        for (int cell = 0; cell < cells * cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        int[] next = Arrays.copyOf(cellStart, cells * cells);
+        int[] byCell = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            byCell[next[cellOf[node]]++] = node;
+        }
+        RoutingGraph.Builder builder = new RoutingGraph.Builder(nodes, 8 * nodes);
+        for (int node = 0; node < nodes; node++) {
+            int row = cellOf[node] / cells;
+            int column = cellOf[node] % cells;
+            for (int r = Math.max(0, row - 1); r <= Math.min(cells - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(cells - 1, column + 1); c++) {
+                    for (int i = cellStart[r * cells + c]; i < cellStart[r * cells + c + 1]; i++) {
+                        int other = byCell[i];
+                        double distance = Math.hypot(x[node] - x[other], y[node] - y[other]);
+                        if (other > node && distance < radius) {
+                            builder.addStreet(node, other, 1 + (int) (distance * 1_000_000));
+                        }
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+}
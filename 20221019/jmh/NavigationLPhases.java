@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+// Phases of NavigationL for the JMH benchmarks, see NavigationPhases.
+public final class NavigationLPhases extends NavigationPhases {
+
+    private final NavigationL navigation = new NavigationL();
+
+    @Override
+    public String variant() {
+        return "navigation-l";
+    }
+
+    @Override
+    public Object parse(Path file) {
+        try {
+            return navigation.readRegionFromFile(file.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Object build(Object region) {
+        return new DijkstraEngine(navigation.buildRoutingGraph((NavigationL.Region) region));
+    }
+
+    @Override
+    public int[] search(Object region, Object engine, String from, String to) {
+        return navigation.computeCityIdsOnShortestPath(from, to, (NavigationL.Region) region, (DijkstraEngine) engine);
+    }
+
+    @Override
+    public Object extract(Object region, int[] path) {
+        return navigation.extractCitiesFromIds(path, (NavigationL.Region) region);
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import navigation.jmh.Phases;
+
+// Phases of Navigation for the JMH benchmarks, found through ServiceLoader.
+// Lives in the default package next to Navigation so it can call its
+// package-private phases without reflection. NavigationLPhases and
+// NavigationRPhases inherit writeRegion and parseStreaming.
+public class NavigationPhases implements Phases {
+
+    private final Navigation navigation = new Navigation();
+
+    @Override
+    public String variant() {
+        return "navigation";
+    }
+
+    @Override
+    public void writeRegion(String shape, int nodes, long seed, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new RegionGenerator(shape, seed, null, false).write(nodes, out);
+        }
+    }
+
+    @Override
+    public Object parse(Path file) {
+        return navigation.readInput(file.toString());
+    }
+
+    @Override
+    public Object parseStreaming(Path file, boolean parallel) throws IOException {
+        return parallel ? RegionParser.parse(file, ForkJoinPool.commonPool()) : RegionParser.parse(file);
+    }
+
+    @Override
+    public Object build(Object region) {
+        return new DijkstraEngine(navigation.buildRoutingGraph((Navigation.Region) region));
+    }
+
+    @Override
+    public int[] search(Object region, Object engine, String from, String to) {
+        return navigation.search(from, to, (Navigation.Region) region, (RoutingEngine) engine, null);
+    }
+
+    @Override
+    public Object extract(Object region, int[] path) {
+        return navigation.extract(path, (Navigation.Region) region);
+    }
+}
@@ -0,0 +1,32 @@
+import java.nio.file.Path;
+
+// Phases of NavigationR for the JMH benchmarks, see NavigationPhases.
+public final class NavigationRPhases extends NavigationPhases {
+
+    private final NavigationR navigation = new NavigationR();
+
+    @Override
+    public String variant() {
+        return "navigation-r";
+    }
+
+    @Override
+    public Object parse(Path file) {
+        return navigation.readInput(file.toString());
+    }
+
+    @Override
+    public Object build(Object region) {
+        return new DijkstraEngine(navigation.BuildRoutingGraph((NavigationR.Region) region));
+    }
+
+    @Override
+    public int[] search(Object region, Object engine, String from, String to) {
+        return navigation.FindPath(from, to, (NavigationR.Region) region, (DijkstraEngine) engine);
+    }
+
+    @Override
+    public Object extract(Object region, int[] path) {
+        return navigation.ToCities(path, (NavigationR.Region) region);
+    }
+}
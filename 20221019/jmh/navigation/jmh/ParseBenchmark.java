@@ -0,0 +1,38 @@
+package navigation.jmh;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Reading the region file: the variant's line reader that creates City and
+// Street objects, next to the byte-level RegionParser (the same for every
+// variant; pick one with -p variant=navigation to skip the repetitions).
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Benchmark
+    public Object lineReader(RegionFile file) {
+        return file.phases.parse(file.file);
+    }
+
+    @Benchmark
+    public Object regionParser(RegionFile file) throws IOException {
+        return file.phases.parseStreaming(file.file, false);
+    }
+
+    @Benchmark
+    public Object regionParserParallel(RegionFile file) throws IOException {
+        return file.phases.parseStreaming(file.file, true);
+    }
+}
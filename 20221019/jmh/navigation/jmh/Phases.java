@@ -0,0 +1,46 @@
+package navigation.jmh;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ServiceLoader;
+
+// The phases of one query of a navigation variant, as the benchmarks see
+// them. The navigation classes live in the default package, which a named
+// package cannot refer to, so regions, engines and paths are passed around as
+// Object; the implementations (NavigationPhases, NavigationLPhases and
+// NavigationRPhases) sit in the default package and call the package-private
+// methods of their variant directly.
+public interface Phases {
+
+    // The implementation for a variant name like "navigation-l".
+    static Phases load(String variant) {
+        for (Phases phases : ServiceLoader.load(Phases.class)) {
+            if (phases.variant().equals(variant)) {
+                return phases;
+            }
+        }
+        throw new IllegalStateException("No " + Phases.class.getName() + " implementation for " + variant);
+    }
+
+    // "navigation", "navigation-l" or "navigation-r"
+    String variant();
+
+    // A RegionGenerator region without coordinates, cities n0 .. n(nodes - 1).
+    void writeRegion(String shape, int nodes, long seed, Path file) throws IOException;
+
+    // The variant's line reader: the region as City and Street objects.
+    Object parse(Path file);
+
+    // RegionParser: the region as a RoutingRegion, on the common pool if parallel.
+    // The same for every variant.
+    Object parseStreaming(Path file, boolean parallel) throws IOException;
+
+    // The variant's RoutingGraph and the DijkstraEngine on top of it.
+    Object build(Object region);
+
+    // City ids of a shortest path between two cities given by name.
+    int[] search(Object region, Object engine, String from, String to);
+
+    // The path as the list of City objects the variant prints.
+    Object extract(Object region, int[] path);
+}
@@ -0,0 +1,45 @@
+package navigation.jmh;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// A parsed region with its engine and random city pairs, per thread since
+// engines are not thread-safe. paths holds the answers for the extract phase.
+@State(Scope.Thread)
+public class Queries {
+
+    private static final int QUERIES = 256;
+
+    Object region;
+    Object engine;
+    String[] from;
+    String[] to;
+    int[][] paths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build(RegionFile file) {
+        region = file.phases.parse(file.file);
+        engine = file.phases.build(region);
+        Random random = new Random(RegionFile.SEED);
+        from = new String[QUERIES];
+        to = new String[QUERIES];
+        paths = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = "n" + random.nextInt(file.nodes);
+            to[i] = "n" + random.nextInt(file.nodes);
+            paths[i] = file.phases.search(region, engine, from[i], to[i]);
+        }
+    }
+
+    // Cycles through the queries, so one benchmark invocation answers one of them.
+    int next() {
+        int query = next;
+        next = (next + 1) % QUERIES;
+        return query;
+    }
+}
@@ -0,0 +1,48 @@
+package navigation.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// A generated region file shared by all benchmark threads, one per trial,
+// and the phases of the navigation variant under test.
+@State(Scope.Benchmark)
+public class RegionFile {
+
+    static final long SEED = 42;
+
+    // 10 million cities need a heap of several GB for the City and Street
+    // objects, add them with -p nodes=... (see pom.xml).
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodes;
+
+    // a RegionGenerator shape
+    @Param({"grid", "planar"})
+    public String shape;
+
+    // Navigation, NavigationL or NavigationR (see Phases.variant)
+    @Param({"navigation", "navigation-l", "navigation-r"})
+    public String variant;
+
+    Phases phases;
+    Path file;
+
+    @Setup(Level.Trial)
+    public void write() throws IOException {
+        phases = Phases.load(variant);
+        file = Files.createTempFile("navigation-jmh", ".txt");
+        phases.writeRegion(shape, nodes, SEED, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+// Query time of OffHeapRoutingGraph next to the heap arrays of RoutingGraph
+// on a synthetic region (see SyntheticGraphs.grid and geometric). The
+// heap graph is copied off the heap, rebuilt from its edges with
+// OffHeapRoutingGraph.Builder, written to a file and mapped again; the same
+// random point-to-point queries are run with DijkstraEngine on the arrays
+// and on every off-heap variant, after a warm-up.
+// Their distances must agree.
+// Prints one CSV row per representation.
+// Usage (Java 22 or newer): java -cp target/classes OffHeapGraphBenchmark [nodes] [grid|geometric] [queries]
+public class OffHeapGraphBenchmark {
+
+    private static final int WARMUP_QUERIES = 20;
+
+    public static void main(String[] args) throws IOException {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String shape = args.length > 1 ? args[1] : "grid";
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Random random = new Random(42);
+        RoutingGraph graph = "geometric".equals(shape)
+                ? SyntheticGraphs.geometric(nodes, random) : SyntheticGraphs.grid(nodes, random);
+        int[] sources = new int[WARMUP_QUERIES + queries];
+        int[] targets = new int[WARMUP_QUERIES + queries];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(graph.nodeCount);
+            targets[i] = random.nextInt(graph.nodeCount);
+        }
+        System.err.println(graph);
+
+        long[] expected = new long[sources.length];
+        DijkstraEngine arrays = new DijkstraEngine(graph);
+        long arrayNanos = 0;
+        for (int i = 0; i < sources.length; i++) {
+            long start = System.nanoTime();
+            expected[i] = arrays.run(sources[i], targets[i]);
+            if (i >= WARMUP_QUERIES) {
+                arrayNanos += System.nanoTime() - start;
+            }
+        }
+        System.out.println("representation,nodes,edges,bytes,build ms,point-to-point us");
+        print("heap", graph.nodeCount, graph.edgeCount(), graph.memoryBytes(), 0, arrayNanos, queries);
+
+        Path file = Files.createTempFile("graph", ".ofh");
+        try (Arena arena = Arena.ofConfined()) {
+            long start = System.nanoTime();
+            OffHeapRoutingGraph copy = OffHeapRoutingGraph.copyOf(graph, arena);
+            measure("off-heap copy", copy, start, sources, targets, expected);
+
+            start = System.nanoTime();
+            OffHeapRoutingGraph built;
+            try (OffHeapRoutingGraph.Builder builder = new OffHeapRoutingGraph.Builder(graph.nodeCount, arena)) {
+                for (int node = 0; node < graph.nodeCount; node++) {
+                    for (int edge = graph.offsets[node]; edge < graph.offsets[node + 1]; edge++) {
+                        builder.addEdge(node, graph.targets[edge], graph.weights[edge]);
+                    }
+                }
+                built = builder.build();
+            }
+            measure("off-heap builder", built, start, sources, targets, expected);
+
+            start = System.nanoTime();
+            built.write(file);
+            OffHeapRoutingGraph mapped = OffHeapRoutingGraph.map(file, arena);
+            measure("mapped file", mapped, start, sources, targets, expected);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void measure(String name, OffHeapRoutingGraph graph, long buildStart, int[] sources,
+            int[] targets, long[] expected) {
+        double buildMillis = (System.nanoTime() - buildStart) / 1e6;
+        DijkstraEngine engine = new DijkstraEngine(graph);
+        long nanos = 0;
+        for (int i = 0; i < sources.length; i++) {
+            long start = System.nanoTime();
+            long distance = engine.run(sources[i], targets[i]);
+            if (i >= WARMUP_QUERIES) {
+                nanos += System.nanoTime() - start;
+            }
+            if (distance != expected[i]) {
+                throw new IllegalStateException(name + " returned " + distance + " instead of " + expected[i]
+                        + " for query " + i);
+            }
+        }
+        print(name, graph.nodeCount(), graph.edgeCount(), graph.memoryBytes(), buildMillis, nanos,
+                sources.length - WARMUP_QUERIES);
+    }
+
+    private static void print(String name, int nodes, long edges, long bytes, double buildMillis, long nanos,
+            int queries) {
+        System.out.printf(Locale.ROOT, "%s,%d,%d,%d,%.1f,%.1f%n", name, nodes, edges, bytes, buildMillis,
+                nanos / 1e3 / queries);
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// CSR street graph outside of the Java heap. Same layout as RoutingGraph,
+// but in MemorySegments and indexed by long:
+//   offsets  long[nodeCount + 1], edges of v at [offsets[v], offsets[v + 1])
+//   targets  int[edgeCount]
+//   weights  int[edgeCount]
+// Node ids stay ints, the edges are only limited by memory. DijkstraEngine
+// searches it through the AdjacencyGraph cursor. Navigation uses it as the
+// off-heap GraphStorage, with the streets streamed from RegionParser into the
+// Builder, and as the off-heap RoutingAlgorithm (see OffHeapStorage);
+// OffHeapGraphBenchmark measures it against the heap graph.
+// The segments belong to an Arena: either memory allocated in an arena
+// (copyOf, Builder), or a file mapped into it (map), which the OS pages in on
+// demand. Closing the arena frees or unmaps the graph, using it afterwards
+// throws IllegalStateException.
+// File layout, all values little-endian:
+//   long magic, long version, long nodeCount, long edgeCount
+//   long[nodeCount + 1] offsets, int[edgeCount] targets, int[edgeCount] weights
+// Uses the Foreign Function & Memory API, final since Java 22, so it sits in
+// its own source root: see the offheap profile in pom.xml.
+final class OffHeapRoutingGraph implements AdjacencyGraph {
+
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final long MAGIC = 0x5247_4E4F_4648_5031L; // "RGNOFHP1"
+    private static final long VERSION = 1;
+    private static final long HEADER_BYTES = 4 * Long.BYTES;
+
+    private final int nodeCount;
+    private final long edgeCount;
+    private final MemorySegment offsets;
+    private final MemorySegment targets;
+    private final MemorySegment weights;
+
+    private OffHeapRoutingGraph(int nodeCount, long edgeCount, MemorySegment offsets, MemorySegment targets,
+            MemorySegment weights) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    // Copies graph, e.g. a mapped RegionSnapshot, into memory of arena. Other
+    // representations than the heap arrays are read through a cursor, twice.
+    static OffHeapRoutingGraph copyOf(AdjacencyGraph graph, Arena arena) {
+        if (graph instanceof RoutingGraph) {
+            return copyOfArrays((RoutingGraph) graph, arena);
+        }
+        int nodeCount = graph.nodeCount();
+        AdjacencyGraph.Cursor cursor = graph.cursor();
+        MemorySegment offsets = arena.allocate((nodeCount + 1L) * Long.BYTES, Long.BYTES);
+        long edges = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            offsets.setAtIndex(LONG, node, edges);
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                edges++;
+            }
+        }
+        offsets.setAtIndex(LONG, nodeCount, edges);
+        MemorySegment targets = arena.allocate(edges * Integer.BYTES, Integer.BYTES);
+        MemorySegment weights = arena.allocate(edges * Integer.BYTES, Integer.BYTES);
+        long edge = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            cursor.moveTo(node);
+            while (cursor.next()) {
+                targets.setAtIndex(INT, edge, cursor.target());
+                weights.setAtIndex(INT, edge, cursor.weight());
+                edge++;
+            }
+        }
+        return new OffHeapRoutingGraph(nodeCount, edges, offsets, targets, weights);
+    }
+
+    private static OffHeapRoutingGraph copyOfArrays(RoutingGraph graph, Arena arena) {
+        int edges = graph.edgeCount();
+        MemorySegment offsets = arena.allocate((graph.nodeCount + 1L) * Long.BYTES, Long.BYTES);
+        for (int node = 0; node <= graph.nodeCount; node++) {
+            offsets.setAtIndex(LONG, node, graph.offsets[node]);
+        }
+        MemorySegment targets = arena.allocate((long) edges * Integer.BYTES, Integer.BYTES);
+        MemorySegment.copy(graph.targets, 0, targets, INT, 0, edges);
+        MemorySegment weights = arena.allocate((long) edges * Integer.BYTES, Integer.BYTES);
+        MemorySegment.copy(graph.weights, 0, weights, INT, 0, edges);
+        return new OffHeapRoutingGraph(graph.nodeCount, edges, offsets, targets, weights);
+    }
+
+    // Maps a file written by write into arena, read-only.
+    static OffHeapRoutingGraph map(Path file, Arena arena) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException(file + " is not an off-heap graph, too short");
+            }
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            if (segment.get(LONG, 0) != MAGIC || segment.get(LONG, Long.BYTES) != VERSION) {
+                throw new IOException(file + " is not an off-heap graph of version " + VERSION);
+            }
+            long nodes = segment.get(LONG, 2L * Long.BYTES);
+            long edges = segment.get(LONG, 3L * Long.BYTES);
+            if (nodes < 0 || nodes >= Integer.MAX_VALUE || edges < 0
+                    || size != fileSize(nodes, edges)) {
+                throw new IOException(file + " has an inconsistent header");
+            }
+            long offsetBytes = (nodes + 1) * Long.BYTES;
+            long edgeBytes = edges * Integer.BYTES;
+            MemorySegment offsets = segment.asSlice(HEADER_BYTES, offsetBytes);
+            MemorySegment targets = segment.asSlice(HEADER_BYTES + offsetBytes, edgeBytes);
+            MemorySegment weights = segment.asSlice(HEADER_BYTES + offsetBytes + edgeBytes, edgeBytes);
+            return new OffHeapRoutingGraph((int) nodes, edges, offsets, targets, weights);
+        }
+    }
+
+    void write(Path file) throws IOException {
+        long size = fileSize(nodeCount, edgeCount);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                Arena arena = Arena.ofConfined()) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+            segment.set(LONG, 0, MAGIC);
+            segment.set(LONG, Long.BYTES, VERSION);
+            segment.set(LONG, 2L * Long.BYTES, nodeCount);
+            segment.set(LONG, 3L * Long.BYTES, edgeCount);
+            long position = HEADER_BYTES;
+            for (MemorySegment section : new MemorySegment[] {offsets, targets, weights}) {
+                MemorySegment.copy(section, 0, segment, position, section.byteSize());
+                position += section.byteSize();
+            }
+            segment.force();
+        }
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    long edgeCount() {
+        return edgeCount;
+    }
+
+    long degree(int node) {
+        return offsets.getAtIndex(LONG, node + 1L) - offsets.getAtIndex(LONG, node);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return offsets.byteSize() + targets.byteSize() + weights.byteSize();
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new Cursor() {
+            private long edge;
+            private long end;
+
+            @Override
+            public void moveTo(int node) {
+                edge = offsets.getAtIndex(LONG, node) - 1;
+                end = offsets.getAtIndex(LONG, node + 1L);
+            }
+
+            @Override
+            public boolean next() {
+                return ++edge < end;
+            }
+
+            @Override
+            public int target() {
+                return targets.getAtIndex(INT, edge);
+            }
+
+            @Override
+            public int weight() {
+                return weights.getAtIndex(INT, edge);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapRoutingGraph{" + "nodes=" + nodeCount + ", edges=" + edgeCount + '}';
+    }
+
+    private static long fileSize(long nodeCount, long edgeCount) {
+        return HEADER_BYTES + (nodeCount + 1) * Long.BYTES + 2 * edgeCount * Integer.BYTES;
+    }
+
+    // Collects edges off the heap and sorts them into an OffHeapRoutingGraph in
+    // memory of arena, like RoutingGraph.Builder but without its 2^31 limit. The
+    // unsorted edges live in a confined scratch arena of the builder, so it is
+    // filled by one thread; the arena is replaced when it grows and closed by
+    // build or close.
+    static final class Builder implements GraphBuilder, AutoCloseable {
+
+        // from, to and length of one edge
+        private static final long EDGE_BYTES = 3 * Integer.BYTES;
+
+        private final int nodeCount;
+        private final Arena arena;
+        private Arena scratch;
+        private MemorySegment edges;
+        private long capacity;
+        private long size;
+
+        Builder(int nodeCount, Arena arena) {
+            this(nodeCount, 1024, arena);
+        }
+
+        Builder(int nodeCount, long edgeCapacity, Arena arena) {
+            this.nodeCount = nodeCount;
+            this.arena = arena;
+            capacity = Math.max(edgeCapacity, 16);
+            scratch = Arena.ofConfined();
+            edges = scratch.allocate(capacity * EDGE_BYTES, Integer.BYTES);
+        }
+
+        @Override
+        public Builder addEdge(int from, int to, int length) {
+            if (from < 0 || from >= nodeCount || to < 0 || to >= nodeCount) {
+                throw new IllegalArgumentException("Edge " + from + " -> " + to + " outside of [0, " + nodeCount + ")");
+            }
+            if (size == capacity) {
+                grow();
+            }
+            long index = 3 * size;
+            edges.setAtIndex(INT, index, from);
+            edges.setAtIndex(INT, index + 1, to);
+            edges.setAtIndex(INT, index + 2, length);
+            size++;
+            return this;
+        }
+
+        long size() {
+            return size;
+        }
+
+        // Counting sort of the edges by their source node.
+        @Override
+        public OffHeapRoutingGraph build() {
+            MemorySegment offsets = arena.allocate((nodeCount + 1L) * Long.BYTES, Long.BYTES);
+            offsets.fill((byte) 0);
+            for (long i = 0; i < size; i++) {
+                long slot = edges.getAtIndex(INT, 3 * i) + 1L;
+                offsets.setAtIndex(LONG, slot, offsets.getAtIndex(LONG, slot) + 1);
+            }
+            for (long v = 0; v < nodeCount; v++) {
+                offsets.setAtIndex(LONG, v + 1, offsets.getAtIndex(LONG, v + 1) + offsets.getAtIndex(LONG, v));
+            }
+            MemorySegment next = scratch.allocate((long) nodeCount * Long.BYTES, Long.BYTES);
+            MemorySegment.copy(offsets, 0, next, 0, next.byteSize());
+            MemorySegment targets = arena.allocate(size * Integer.BYTES, Integer.BYTES);
+            MemorySegment weights = arena.allocate(size * Integer.BYTES, Integer.BYTES);
+            for (long i = 0; i < size; i++) {
+                int from = edges.getAtIndex(INT, 3 * i);
+                long slot = next.getAtIndex(LONG, from);
+                next.setAtIndex(LONG, from, slot + 1);
+                targets.setAtIndex(INT, slot, edges.getAtIndex(INT, 3 * i + 1));
+                weights.setAtIndex(INT, slot, edges.getAtIndex(INT, 3 * i + 2));
+            }
+            OffHeapRoutingGraph graph = new OffHeapRoutingGraph(nodeCount, size, offsets, targets, weights);
+            close();
+            return graph;
+        }
+
+        @Override
+        public void close() {
+            if (scratch != null) {
+                scratch.close();
+                scratch = null;
+                edges = null;
+            }
+        }
+
+        private void grow() {
+            long newCapacity = capacity * 2;
+            Arena grown = Arena.ofConfined();
+            MemorySegment newEdges = grown.allocate(newCapacity * EDGE_BYTES, Integer.BYTES);
+            MemorySegment.copy(edges, 0, newEdges, 0, size * EDGE_BYTES);
+            scratch.close();
+            scratch = grown;
+            edges = newEdges;
+            capacity = newCapacity;
+        }
+    }
+}
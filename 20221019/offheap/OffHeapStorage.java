@@ -0,0 +1,18 @@
+import java.lang.foreign.Arena;
+
+// GraphStorage.OFF_HEAP and RoutingAlgorithm.OFF_HEAP, created by name in
+// GraphStorage.offHeap. The graphs live in automatic arenas: every thread can
+// read them, e.g. the workers of BatchRouter, and their memory is freed once
+// the graph is unreachable.
+final class OffHeapStorage implements GraphStorage.Backend {
+
+    @Override
+    public OffHeapRoutingGraph copyOf(AdjacencyGraph graph) {
+        return OffHeapRoutingGraph.copyOf(graph, Arena.ofAuto());
+    }
+
+    @Override
+    public OffHeapRoutingGraph.Builder builder(int nodeCount) {
+        return new OffHeapRoutingGraph.Builder(nodeCount, Arena.ofAuto());
+    }
+}